@@ -13,4 +13,9 @@ public class AStarStrategy implements CostStrategy {
     public double getScore(Cell cell) {
         return cell.gScore + cell.hScore;
     }
+
+    @Override
+    public long getFixedPointScore(Cell cell) {
+        return cell.gCost + cell.hCost;
+    }
 }
@@ -1,6 +1,7 @@
 package CostStrategy;
 
 import DataStructures.Cell;
+import HeuristicStrategy.FixedPointOctileDistance;
 
 /**
  * CostStrategy
@@ -10,4 +11,14 @@ import DataStructures.Cell;
 
 public interface CostStrategy {
     public double getScore(Cell cell);
+
+    /**
+     * Score of the integer-cost search mode, computed from Cell#gCost & Cell#hCost. Strategies that do not
+     * override it get their floating-point score rounded to units
+     * @param cell
+     * @return Non-negative score, in units of {@link FixedPointOctileDistance}
+     */
+    public default long getFixedPointScore(Cell cell) {
+        return FixedPointOctileDistance.toUnits(getScore(cell));
+    }
 }
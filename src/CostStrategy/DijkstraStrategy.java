@@ -13,4 +13,9 @@ public class DijkstraStrategy implements CostStrategy {
     public double getScore(Cell cell) {
         return cell.gScore;
     }
+
+    @Override
+    public long getFixedPointScore(Cell cell) {
+        return cell.gCost;
+    }
 }
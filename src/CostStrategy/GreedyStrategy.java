@@ -13,4 +13,9 @@ public class GreedyStrategy implements CostStrategy {
     public double getScore(Cell cell) {
         return cell.hScore;
     }
+
+    @Override
+    public long getFixedPointScore(Cell cell) {
+        return cell.hCost;
+    }
 }
@@ -13,6 +13,10 @@ public class Cell {
     public double gScore = 0.0;
     public double hScore = 0.0;
 
+    /** Fixed-point mirrors of gScore & hScore, maintained by the integer-cost search mode */
+    public long gCost = 0;
+    public long hCost = 0;
+
     public Cell parent = null;
 
     public boolean isObstacle = false;
@@ -54,6 +58,8 @@ public class Cell {
     public void reset() {
         this.gScore = 0.0;
         this.hScore = 0.0;
+        this.gCost = 0;
+        this.hCost = 0;
         this.parent = null;
     }
 
@@ -3,8 +3,8 @@ package DataStructures;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
 
 /**
  * Map for path-finding
@@ -17,30 +17,42 @@ import java.util.Set;
  *       Yet, as most coordinate systems applied in Computer Science problems place their origins at the
  *       upper-left corner, {Cell#CartesianCoordinateToCGCoordinate} and {Cell#CGCoordinateToCartesianCoordinate}
  *       methods are offered to perform necessary coordinate translation between different coordinate systems.
+ *
+ * Note: Obstacles are kept in immutable {@link MapSnapshot}s published through an atomic reference. Every edit
+ *       publishes a new snapshot, so a query that pinned a snapshot with {@link #getSnapshot} keeps a consistent
+ *       view of the map while the map is being edited, without any lock.
+ *
+ * Note: The bounds of the map are those of its snapshots, x in [0, width) & y in [0, height): the bottom-left
+ *       corner is always the origin, and the size changes through {@link #resize} only. The Cells of
+ *       {@link #getCellAt} mirror the obstacles of the latest snapshot ({@link Cell#isObstacle}, refreshed by every
+ *       edit) for single-threaded callers, concurrent readers should pin a snapshot instead.
  */
 
 public class Map {
-    private Cell topLeft, topRight, bottomLeft, bottomRight;
-    private Set<Cell> obstacles = new HashSet<>();
-    private int width = -1, height = -1;
+    private volatile Cell topLeft, topRight, bottomLeft, bottomRight;
+    private volatile int width = -1, height = -1;
     private Cell[][] cells = null;
+    private final Object cellsLock = new Object();        // Guards cells, which a resize replaces
+    private final AtomicReference<MapSnapshot> snapshot = new AtomicReference<>();
 
     private static Map mapInstance;
 
     private Map(){}
 
     public static Map getMap() {
-        return mapInstance == null ? initMap(new Cell(0, 0), 5, 5) : mapInstance;
+        return mapInstance == null ? initMap(5, 5) : mapInstance;
     }
 
     /**
      * Init map based on the coordinates of the four corners
      * @param topLeft
      * @param topRight
-     * @param bottomLeft
+     * @param bottomLeft Must be the origin (0, 0)
      * @param bottomRight
      * @return
+     * @deprecated The map always has its origin at the bottom-left corner, use {@link #initMap(int, int)}
      */
+    @Deprecated
     public static Map initMap(Cell topLeft, Cell topRight, Cell bottomLeft, Cell bottomRight) {
         int width = topRight.x - topLeft.x + 1;
         int height = topLeft.y - bottomLeft.y + 1;
@@ -50,22 +62,38 @@ public class Map {
 
     /**
      * Init map with coordinate of the origin, along with the width & height of the map
-     * @param bottomLeft
+     * @param bottomLeft Must be the origin (0, 0)
      * @param width
      * @param height
      * @return
+     * @deprecated The map always has its origin at the bottom-left corner, use {@link #initMap(int, int)}
      */
+    @Deprecated
     public static Map initMap(Cell bottomLeft, int width, int height) {
+        if (bottomLeft.x != 0 || bottomLeft.y != 0) {
+            throw new IllegalArgumentException("The bottom-left corner of a map must be the origin: " + bottomLeft);
+        }
+        return initMap(width, height);
+    }
+
+    /**
+     * Init an empty map of the given size, with its bottom-left corner at the origin
+     * @param width
+     * @param height
+     * @return
+     */
+    public static Map initMap(int width, int height) {
         mapInstance = new Map();
-        mapInstance.topLeft = new Cell(bottomLeft.x, bottomLeft.y + height - 1);
-        mapInstance.topRight = new Cell(bottomLeft.x + width - 1, bottomLeft.y + height - 1);
-        mapInstance.bottomLeft = bottomLeft;
-        mapInstance.bottomRight = new Cell(bottomLeft.x + width - 1, bottomLeft.y);
+        mapInstance.topLeft = new Cell(0, height - 1);
+        mapInstance.topRight = new Cell(width - 1, height - 1);
+        mapInstance.bottomLeft = new Cell(0, 0);
+        mapInstance.bottomRight = new Cell(width - 1, 0);
 
         mapInstance.width = width;
         mapInstance.height = height;
 
         mapInstance.cells = new Cell[width][height];
+        mapInstance.snapshot.set(MapSnapshot.empty(width, height));
 
         return mapInstance;
     }
@@ -77,9 +105,9 @@ public class Map {
      */
     public static Map initMap(String filePath) {
         mapInstance = new Map();
+        MapSnapshot.Builder builder = null;
 
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(filePath));
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
             String line = null;
             char[] lineChars = null;
             int rowIdx = 0;
@@ -105,17 +133,16 @@ public class Map {
 
                     if (mapInstance.height != -1 && mapInstance.width != -1 && mapInstance.cells == null) {
                         mapInstance.cells = new Cell[mapInstance.width][mapInstance.height];
+                        builder = new MapSnapshot.Builder(mapInstance.width, mapInstance.height);
                     }
                 }
                 else {
                     lineChars = line.toCharArray();
 
+                    // Cells are created on demand by getCellAt, only the obstacles are recorded here
                     for (int colIdx = 0; colIdx < lineChars.length; colIdx ++) {
                         if (lineChars[colIdx] == '@') {
-                            mapInstance.addObstacle(colIdx, rowIdx);
-                        }
-                        else {
-                            mapInstance.addCell(colIdx, rowIdx);
+                            builder.setObstacle(colIdx, rowIdx, true);
                         }
                     }
 
@@ -126,6 +153,10 @@ public class Map {
             e.printStackTrace();
         }
 
+        if (builder != null) {
+            mapInstance.snapshot.set(builder.build());
+        }
+
         return mapInstance;
     }
 
@@ -136,8 +167,7 @@ public class Map {
      * @return
      */
     public boolean isObstacleAt(int x, int y) {
-        Cell cell = getCellAt(x, y);
-        return cell == null || cell.isObstacle;
+        return getSnapshot().isObstacleAt(x, y);
     }
 
     /**
@@ -147,8 +177,7 @@ public class Map {
      * @return
      */
     public boolean isOutsideMap(int x, int y) {
-        return x < topLeft.x || x > topRight.x ||
-                y < bottomLeft.y || y > topLeft.y;
+        return getSnapshot().isOutsideMap(x, y);
     }
 
     /**
@@ -158,7 +187,7 @@ public class Map {
      * @return
      */
     public boolean isPositionWalkable(int x, int y) {
-        return !isOutsideMap(x, y) && !isObstacleAt(x, y);
+        return getSnapshot().isPositionWalkable(x, y);
     }
 
     /**
@@ -183,71 +212,191 @@ public class Map {
      * @return
      */
     public boolean reachable(int fromX, int fromY, int toX, int toY) {
-        int subDirX = toX - fromX;
-        int subDirY = toY - fromY;
+        return getSnapshot().reachable(fromX, fromY, toX, toY);
+    }
 
-        return isPositionWalkable(toX, toY) && ((subDirX == 0 || subDirY == 0) ||
-                (isPositionWalkable(fromX, toY) || isPositionWalkable(toX, fromY)));
+    /**
+     * Obtain the current version of the map. The snapshot never changes, later edits publish new snapshots
+     * @return
+     */
+    public MapSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Apply a batch of edits atomically, e.g. {@code map.edit(s -> s.toBuilder().setObstacle(1, 2, true).build())}
+     * @param edit Function deriving the new snapshot from the current one. May be called more than once if
+     *             other edits are published concurrently, hence it must be free of side effects. The size of the
+     *             map must be kept
+     * @return The published snapshot
+     */
+    public MapSnapshot edit(UnaryOperator<MapSnapshot> edit) {
+        while (true) {
+            MapSnapshot current = snapshot.get();
+            MapSnapshot next = edit.apply(current);
+            if (next.getWidth() != current.getWidth() || next.getHeight() != current.getHeight()) {
+                throw new IllegalArgumentException("An edit cannot resize the map: " + next.getWidth() + " x "
+                        + next.getHeight() + " instead of " + current.getWidth() + " x " + current.getHeight());
+            }
+
+            if (snapshot.compareAndSet(current, next)) {
+                refreshCells(next.getWidth(), next.getChangedCells(current));
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Refresh the obstacle mirror of the created Cells at the given positions. Reads the latest snapshot under
+     * the lock, so that concurrent edits leave the mirror of the last one whatever their order
+     * @param snapshotWidth Width of the snapshot the indexes refer to, the map may have been resized since
+     * @param changedCells Indexes (y * snapshotWidth + x)
+     */
+    private void refreshCells(int snapshotWidth, int[] changedCells) {
+        synchronized (cellsLock) {
+            MapSnapshot latest = snapshot.get();
+            for (int idx : changedCells) {
+                int x = idx % snapshotWidth, y = idx / snapshotWidth;
+                Cell cell = x < cells.length && y < cells[x].length ? cells[x][y] : null;
+                if (cell != null) {
+                    cell.isObstacle = latest.isObstacleAt(cell.x, cell.y);
+                }
+            }
+        }
     }
 
     /** ---------- Setters ---------- */
 
+    // The origin is fixed, so a corner only sets the size of the map. The setters publish a resized snapshot (the
+    // obstacles within the new bounds are kept), the queries that pinned the previous one are left unaffected
+
+    /**
+     * @param bottomLeft Must be the origin (0, 0)
+     * @deprecated The map always has its origin at the bottom-left corner
+     */
+    @Deprecated
     public void setBottomLeft(Cell bottomLeft) {
-        mapInstance.bottomLeft = bottomLeft;
+        checkCorner(bottomLeft, 0, 0);
     }
 
+    /**
+     * @param bottomRight Must be on the x-axis
+     * @deprecated Use {@link #resize}
+     */
+    @Deprecated
     public void setBottomRight(Cell bottomRight) {
-        mapInstance.bottomRight = bottomRight;
+        checkCorner(bottomRight, bottomRight.x, 0);
+        resize(bottomRight.x + 1, height);
     }
 
+    /**
+     * @param topLeft Must be on the y-axis
+     * @deprecated Use {@link #resize}
+     */
+    @Deprecated
     public void setTopLeft(Cell topLeft) {
-        mapInstance.topLeft = topLeft;
+        checkCorner(topLeft, 0, topLeft.y);
+        resize(width, topLeft.y + 1);
     }
 
+    /**
+     * @param topRight
+     * @deprecated Use {@link #resize}
+     */
+    @Deprecated
     public void setTopRight(Cell topRight) {
-        mapInstance.topRight = topRight;
+        resize(topRight.x + 1, topRight.y + 1);
+    }
+
+    private static void checkCorner(Cell corner, int expectedX, int expectedY) {
+        if (corner.x != expectedX || corner.y != expectedY) {
+            throw new IllegalArgumentException("Invalid corner " + corner + ", the bottom-left corner of a map must "
+                    + "be the origin");
+        }
+    }
+
+    /**
+     * Change the size of the map, keeping the obstacles that lie within the new bounds, as well as the Cells
+     * created there
+     * @param width
+     * @param height
+     * @return The published snapshot
+     */
+    public MapSnapshot resize(int width, int height) {
+        synchronized (cellsLock) {
+            MapSnapshot current, next;
+            do {
+                current = snapshot.get();
+                next = current.resized(width, height);
+            } while (!snapshot.compareAndSet(current, next));
+
+            Cell[][] resizedCells = new Cell[width][height];
+            for (int x = 0; x < Math.min(width, cells.length); x++) {
+                System.arraycopy(cells[x], 0, resizedCells[x], 0, Math.min(height, cells[x].length));
+            }
+            this.cells = resizedCells;
+
+            this.width = width;
+            this.height = height;
+            this.topLeft = new Cell(0, height - 1);
+            this.topRight = new Cell(width - 1, height - 1);
+            this.bottomLeft = new Cell(0, 0);
+            this.bottomRight = new Cell(width - 1, 0);
+            return next;
+        }
     }
 
     /** ---------- Getters ---------- */
 
+    // The bounds follow the snapshots. The corners are copied out, so that callers never share (and mutate) the
+    // corner cells of the map
+
     public Cell getBottomLeft() {
-        return mapInstance.bottomLeft;
+        return new Cell(this.bottomLeft.x, this.bottomLeft.y);
     }
 
     public Cell getBottomRight() {
-        return mapInstance.bottomRight;
+        return new Cell(this.bottomRight.x, this.bottomRight.y);
     }
 
     public Cell getTopLeft() {
-        return mapInstance.topLeft;
+        return new Cell(this.topLeft.x, this.topLeft.y);
     }
 
     public Cell getTopRight() {
-        return mapInstance.topRight;
+        return new Cell(this.topRight.x, this.topRight.y);
     }
 
     public int getHeight() {
-        return mapInstance.height;
+        return this.height;
     }
 
     public int getWidth() {
-        return mapInstance.width;
+        return this.width;
     }
 
+    /**
+     * @return The Cells created so far (null elsewhere), indexed by [x][y]. Not synchronized, single-threaded
+     *         callers only
+     */
     public Cell[][] getCells() {
-        return mapInstance.getCells();
+        return this.cells;
     }
 
     public Cell getCellAt(int x, int y) {
-        if (x < 0 || x >= width || y < 0 || y >= height) {
-            return null;
-        }
+        synchronized (cellsLock) {
+            // Bounds of the cells rather than the size fields, which a resize may be updating
+            if (x < 0 || x >= cells.length || y < 0 || y >= cells[x].length) {
+                return null;
+            }
 
-        if (mapInstance.cells[x][y] == null) {
-            mapInstance.cells[x][y] = new Cell(x, y);
-        }
+            if (this.cells[x][y] == null) {
+                this.cells[x][y] = new Cell(x, y);
+                this.cells[x][y].isObstacle = isObstacleAt(x, y);
+            }
 
-        return mapInstance.cells[x][y];
+            return this.cells[x][y];
+        }
     }
 
     public Cell getCellAt(Cell cell) {
@@ -261,11 +410,14 @@ public class Map {
      * @return True if a Cell instance is created, false if a Cell instance already exists at the given coordinate
      */
     public boolean addCell(int x, int y) {
-        if (mapInstance.cells[x][y] == null) {
-            mapInstance.cells[x][y] = new Cell(x, y);
-            return true;
-        } else {
-            return false;
+        synchronized (cellsLock) {
+            if (this.cells[x][y] == null) {
+                this.cells[x][y] = new Cell(x, y);
+                this.cells[x][y].isObstacle = isObstacleAt(x, y);
+                return true;
+            } else {
+                return false;
+            }
         }
     }
 
@@ -274,8 +426,14 @@ public class Map {
      * @param y
      */
     public void addObstacle(int x, int y) {
-        mapInstance.obstacles.add(new Cell(x, y));
+        edit(current -> current.withObstacle(x, y));
+    }
 
-        getCellAt(x, y).isObstacle = true;
+    /** Remove the obstacle at given coordinate, if any
+     * @param x
+     * @param y
+     */
+    public void removeObstacle(int x, int y) {
+        edit(current -> current.withoutObstacle(x, y));
     }
 }
@@ -0,0 +1,354 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * MapSnapshot: Immutable, versioned view of the obstacles of a {@link Map}
+ *
+ * The map is split into chunks of 64 x 64 cells, each stored as 64 rows of 64 bits (a set bit being an obstacle).
+ * Editing a snapshot yields a new snapshot that shares every untouched chunk with the old one, so an edit costs
+ * one chunk plus the array of chunk references instead of a full copy of the map. Chunks without any obstacle
+ * are not allocated at all.
+ *
+ * Coordinates follow {@link Map#getCellAt}: x in [0, width), y in [0, height).
+ */
+
+public final class MapSnapshot {
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final int width, height;
+    private final long version;
+    private final int chunkColumns;
+    /** Indexed by (chunkY * chunkColumns + chunkX), null if the chunk has no obstacle */
+    private final long[][] chunks;
+
+    private MapSnapshot(int width, int height, long version, long[][] chunks) {
+        this.width = width;
+        this.height = height;
+        this.version = version;
+        this.chunkColumns = chunkCount(width);
+        this.chunks = chunks;
+    }
+
+    /**
+     * Create a snapshot of the given size without any obstacle
+     * @param width
+     * @param height
+     * @return
+     */
+    public static MapSnapshot empty(int width, int height) {
+        return new Builder(width, height).build();
+    }
+
+    /**
+     * Check if given coordinate position is beyond the boundaries of the map
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean isOutsideMap(int x, int y) {
+        return x < 0 || x >= width || y < 0 || y >= height;
+    }
+
+    /**
+     * Check if given coordinate position on the map is an obstacle. Positions outside the map count as obstacles
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean isObstacleAt(int x, int y) {
+        if (isOutsideMap(x, y)) {
+            return true;
+        }
+
+        long[] chunk = chunks[chunkIndex(x, y)];
+        return chunk != null && (chunk[y & CHUNK_MASK] & (1L << (x & CHUNK_MASK))) != 0;
+    }
+
+    /**
+     * Check if the given coordinate position is eligible to walk over
+     * @param x
+     * @param y
+     * @return
+     */
+    public boolean isPositionWalkable(int x, int y) {
+        return !isObstacleAt(x, y);
+    }
+
+    /**
+     * Same semantics as {@link Map#reachable}
+     * @param fromX
+     * @param fromY
+     * @param toX
+     * @param toY
+     * @return
+     */
+    public boolean reachable(int fromX, int fromY, int toX, int toY) {
+        int subDirX = toX - fromX;
+        int subDirY = toY - fromY;
+
+        return isPositionWalkable(toX, toY) && ((subDirX == 0 || subDirY == 0) ||
+                (isPositionWalkable(fromX, toY) || isPositionWalkable(toX, fromY)));
+    }
+
+    /**
+     * Check which of the two candidate forced neighbors of given position are actually forced when arriving
+     * there along the given direction (the pruning rule of Jump Point Search)
+     * @param x
+     * @param y
+     * @param direction
+     * @return Bit 0 set if the first candidate is forced, bit 1 set if the second one is
+     */
+    public int getForcedNeighborMask(int x, int y, Direction direction) {
+        int mask = 0;
+
+        if (direction.yOffset == 0) {                                                           // Move horizontally
+            if (reachable(x, y, x + direction.xOffset, y - 1) && isObstacleAt(x, y - 1)) {
+                mask |= 1;
+            }
+            if (reachable(x, y, x + direction.xOffset, y + 1) && isObstacleAt(x, y + 1)) {
+                mask |= 2;
+            }
+        } else if (direction.xOffset == 0) {                                                    // Move vertically
+            if (reachable(x, y, x - 1, y + direction.yOffset) && isObstacleAt(x - 1, y)) {
+                mask |= 1;
+            }
+            if (reachable(x, y, x + 1, y + direction.yOffset) && isObstacleAt(x + 1, y)) {
+                mask |= 2;
+            }
+        } else {                                                                                // Move diagonally
+            if (reachable(x, y, x - direction.xOffset, y + direction.yOffset) &&
+                    isObstacleAt(x - direction.xOffset, y)) {
+                mask |= 1;
+            }
+            if (reachable(x, y, x + direction.xOffset, y - direction.yOffset) &&
+                    isObstacleAt(x, y - direction.yOffset)) {
+                mask |= 2;
+            }
+        }
+
+        return mask;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return A snapshot of the next version with an obstacle at the given position
+     */
+    public MapSnapshot withObstacle(int x, int y) {
+        return toBuilder().setObstacle(x, y, true).build();
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return A snapshot of the next version without obstacle at the given position
+     */
+    public MapSnapshot withoutObstacle(int x, int y) {
+        return toBuilder().setObstacle(x, y, false).build();
+    }
+
+    /**
+     * @param width
+     * @param height
+     * @return A snapshot of the next version with the given size, keeping the obstacles that lie within it
+     */
+    public MapSnapshot resized(int width, int height) {
+        Builder builder = new Builder(width, height, version + 1);
+
+        for (int idx = 0; idx < chunks.length; idx++) {
+            long[] chunk = chunks[idx];
+            if (chunk == null) {
+                continue;
+            }
+
+            int baseX = (idx % chunkColumns) << CHUNK_BITS;
+            int baseY = (idx / chunkColumns) << CHUNK_BITS;
+            for (int row = 0; row < CHUNK_SIZE && baseY + row < height; row++) {
+                long bits = chunk[row];
+                while (bits != 0) {
+                    int x = baseX + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    if (x < width) {
+                        builder.setObstacle(x, baseY + row, true);
+                    }
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Obtain the positions whose obstacle state differs between the given snapshot and this one. Chunks shared by
+     * both snapshots are skipped without being read, so the cost follows the number of edited chunks
+     * @param other Another version of the same map
+     * @return Indexes (y * width + x) of the changed positions, chunk by chunk
+     */
+    public int[] getChangedCells(MapSnapshot other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("Snapshots of different sizes: " + other.width + " x " + other.height
+                    + " and " + width + " x " + height);
+        }
+
+        int[] changedCells = new int[16];
+        int count = 0;
+
+        for (int idx = 0; idx < chunks.length; idx++) {
+            long[] chunk = chunks[idx], otherChunk = other.chunks[idx];
+            if (chunk == otherChunk) {
+                continue;
+            }
+
+            int baseX = (idx % chunkColumns) << CHUNK_BITS;
+            int baseY = (idx / chunkColumns) << CHUNK_BITS;
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                long changedBits = (chunk == null ? 0 : chunk[row]) ^ (otherChunk == null ? 0 : otherChunk[row]);
+
+                while (changedBits != 0) {
+                    int column = Long.numberOfTrailingZeros(changedBits);
+                    changedBits &= changedBits - 1;
+
+                    if (count == changedCells.length) {
+                        changedCells = Arrays.copyOf(changedCells, count * 2);
+                    }
+                    changedCells[count++] = (baseY + row) * width + baseX + column;
+                }
+            }
+        }
+
+        return Arrays.copyOf(changedCells, count);
+    }
+
+    /**
+     * @return 64-bit hash of the size & obstacles of the snapshot. Unlike the version, it depends on the content
+     *         only, so it identifies the map across edits & process restarts (e.g. for validating data derived
+     *         from it)
+     */
+    public long getContentHash() {
+        long hash = mix(((long) width << 32) | height);
+        for (long[] chunk : chunks) {
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                hash = (hash ^ mix(chunk == null ? 0 : chunk[row])) * 0x100000001B3L;
+            }
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads every input bit over the whole output
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+
+    /**
+     * Start a batch of edits on top of this snapshot, sharing the chunks that are left untouched
+     * @return
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Number of edits applied since the map has been loaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private int chunkIndex(int x, int y) {
+        return (y >> CHUNK_BITS) * chunkColumns + (x >> CHUNK_BITS);
+    }
+
+    private static int chunkCount(int cells) {
+        return (cells + CHUNK_SIZE - 1) >> CHUNK_BITS;
+    }
+
+    /**
+     * Builder: Mutable staging area of a snapshot. Chunks inherited from the base snapshot are copied only when
+     * first written to
+     */
+    public static final class Builder {
+        private final int width, height;
+        private final long version;
+        private final int chunkColumns;
+        private final long[][] chunks;
+        private final boolean[] ownedChunks;
+
+        /**
+         * Start a snapshot of version 0 without any obstacle
+         * @param width
+         * @param height
+         */
+        public Builder(int width, int height) {
+            this(width, height, 0);
+        }
+
+        private Builder(int width, int height, long version) {
+            if (width < 0 || height < 0) {
+                throw new IllegalArgumentException("Invalid map size: " + width + " x " + height);
+            }
+
+            this.width = width;
+            this.height = height;
+            this.version = version;
+            this.chunkColumns = chunkCount(width);
+            this.chunks = new long[chunkColumns * chunkCount(height)][];
+            this.ownedChunks = new boolean[chunks.length];
+        }
+
+        private Builder(MapSnapshot base) {
+            this.width = base.width;
+            this.height = base.height;
+            this.version = base.version + 1;
+            this.chunkColumns = base.chunkColumns;
+            this.chunks = Arrays.copyOf(base.chunks, base.chunks.length);
+            this.ownedChunks = new boolean[chunks.length];
+        }
+
+        public Builder setObstacle(int x, int y, boolean isObstacle) {
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                throw new IndexOutOfBoundsException("Position [" + x + ", " + y + "] is outside the map");
+            }
+
+            int idx = (y >> CHUNK_BITS) * chunkColumns + (x >> CHUNK_BITS);
+            long[] chunk = chunks[idx];
+
+            if (!ownedChunks[idx]) {
+                if (chunk == null && !isObstacle) {
+                    return this;
+                }
+                chunk = chunk == null ? new long[CHUNK_SIZE] : chunk.clone();
+                chunks[idx] = chunk;
+                ownedChunks[idx] = true;
+            }
+
+            if (isObstacle) {
+                chunk[y & CHUNK_MASK] |= 1L << (x & CHUNK_MASK);
+            } else {
+                chunk[y & CHUNK_MASK] &= ~(1L << (x & CHUNK_MASK));
+            }
+            return this;
+        }
+
+        public MapSnapshot build() {
+            // Hand over a copy, so that the builder can keep on editing without affecting the snapshot
+            long[][] snapshotChunks = chunks.clone();
+            Arrays.fill(ownedChunks, false);
+            return new MapSnapshot(width, height, version, snapshotChunks);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package DataStructures;
+
+import java.util.Arrays;
+
+/**
+ * RadixHeap: Monotone priority queue over non-negative long keys
+ *
+ * Elements are kept in 65 buckets according to the highest bit in which their key differs from the last key
+ * polled. Since keys never go below that last key, polling only ever redistributes one bucket into lower ones,
+ * which makes both operations amortized O(log C) for a key range C, with no comparison between elements.
+ *
+ * Note: The queue is monotone. A key smaller than the last polled key is treated as equal to it, which keeps the
+ *       structure valid but only orders the elements correctly if the keys of the search are monotone (e.g. A* with
+ *       a consistent heuristic, or Dijkstra).
+ *
+ * Reference: Ahuja, Mehlhorn, Orlin, Tarjan, "Faster Algorithms for the Shortest Path Problem" (1990)
+ */
+
+public class RadixHeap<T> {
+    private static final int BUCKET_COUNT = 65;
+    private static final int INITIAL_BUCKET_CAPACITY = 8;
+
+    private final long[][] bucketKeys = new long[BUCKET_COUNT][];
+    private final Object[][] bucketValues = new Object[BUCKET_COUNT][];
+    private final int[] bucketSizes = new int[BUCKET_COUNT];
+    private long lastKey = 0;
+    private int size = 0;
+
+    public RadixHeap() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketKeys[i] = new long[INITIAL_BUCKET_CAPACITY];
+            bucketValues[i] = new Object[INITIAL_BUCKET_CAPACITY];
+        }
+    }
+
+    /**
+     * @param key Non-negative key, raised to the last polled key if smaller
+     * @param value
+     */
+    public void add(long key, T value) {
+        if (key < 0) {
+            throw new IllegalArgumentException("Negative key: " + key);
+        }
+
+        long clampedKey = Math.max(key, lastKey);
+        addToBucket(getBucket(clampedKey), clampedKey, value);
+        size++;
+    }
+
+    /**
+     * Remove and return an element of minimum key
+     * @return The element, or null if the queue is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        if (size == 0) {
+            return null;
+        }
+
+        if (bucketSizes[0] == 0) {
+            int bucket = 1;
+            while (bucketSizes[bucket] == 0) {
+                bucket++;
+            }
+
+            // The minimum of the first non-empty bucket becomes the new last key, everything else in that bucket
+            // then differs from it in a lower bit
+            long[] keys = bucketKeys[bucket];
+            Object[] values = bucketValues[bucket];
+            int count = bucketSizes[bucket];
+
+            long minKey = keys[0];
+            for (int i = 1; i < count; i++) {
+                minKey = Math.min(minKey, keys[i]);
+            }
+            lastKey = minKey;
+
+            bucketSizes[bucket] = 0;
+            for (int i = 0; i < count; i++) {
+                addToBucket(getBucket(keys[i]), keys[i], values[i]);
+                values[i] = null;
+            }
+        }
+
+        int last = --bucketSizes[0];
+        T value = (T) bucketValues[0][last];
+        bucketValues[0][last] = null;
+        size--;
+
+        return value;
+    }
+
+    /**
+     * @return The key of the elements poll() returns next, only meaningful if the queue is not empty
+     */
+    public long peekKey() {
+        if (bucketSizes[0] > 0) {
+            return lastKey;
+        }
+
+        long minKey = Long.MAX_VALUE;
+        for (int bucket = 1; bucket < BUCKET_COUNT; bucket++) {
+            if (bucketSizes[bucket] > 0) {
+                for (int i = 0; i < bucketSizes[bucket]; i++) {
+                    minKey = Math.min(minKey, bucketKeys[bucket][i]);
+                }
+                break;
+            }
+        }
+        return minKey;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            Arrays.fill(bucketValues[i], 0, bucketSizes[i], null);
+            bucketSizes[i] = 0;
+        }
+        lastKey = 0;
+        size = 0;
+    }
+
+    private int getBucket(long key) {
+        return key == lastKey ? 0 : 64 - Long.numberOfLeadingZeros(key ^ lastKey);
+    }
+
+    private void addToBucket(int bucket, long key, Object value) {
+        int count = bucketSizes[bucket];
+
+        if (count == bucketKeys[bucket].length) {
+            bucketKeys[bucket] = Arrays.copyOf(bucketKeys[bucket], count * 2);
+            bucketValues[bucket] = Arrays.copyOf(bucketValues[bucket], count * 2);
+        }
+
+        bucketKeys[bucket][count] = key;
+        bucketValues[bucket][count] = value;
+        bucketSizes[bucket] = count + 1;
+    }
+}
@@ -0,0 +1,134 @@
+package DataStructures;
+
+import HeuristicStrategy.DistanceAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * TargetSet: The goals of a one-to-many query, bucketed on a uniform grid so that the distance to the nearest
+ * goal is found without visiting all of them
+ *
+ * The nearest goal is searched ring by ring of buckets around the given position, and the search stops as soon as
+ * the next ring cannot hold anything closer. The bound used for that is the Chebyshev distance, hence the distance
+ * algorithm must never return less than the Chebyshev distance, which is the case of all the algorithms in
+ * {@link HeuristicStrategy}.
+ */
+
+public class TargetSet {
+    /** Below this number of goals, a linear scan is cheaper than the buckets */
+    private static final int LINEAR_SCAN_LIMIT = 16;
+
+    private final Set<Long> positions = new HashSet<>();
+    private final List<Cell> targets = new ArrayList<>();
+    private final java.util.Map<Long, List<Cell>> buckets = new HashMap<>();
+    private final int bucketSize;
+    private int minBucketX = Integer.MAX_VALUE, maxBucketX = Integer.MIN_VALUE;
+    private int minBucketY = Integer.MAX_VALUE, maxBucketY = Integer.MIN_VALUE;
+
+    public TargetSet(Collection<Cell> cells) {
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+
+        for (Cell cell : cells) {
+            if (positions.add(pack(cell.x, cell.y))) {
+                targets.add(new Cell(cell.x, cell.y));
+                minX = Math.min(minX, cell.x);
+                maxX = Math.max(maxX, cell.x);
+                minY = Math.min(minY, cell.y);
+                maxY = Math.max(maxY, cell.y);
+            }
+        }
+
+        if (targets.isEmpty()) {
+            bucketSize = 1;
+            return;
+        }
+
+        // Roughly one goal per bucket, assuming goals spread evenly over their bounding box
+        long boundingBoxArea = (long) (maxX - minX + 1) * (maxY - minY + 1);
+        bucketSize = Math.max(4, (int) Math.sqrt((double) boundingBoxArea / targets.size()));
+
+        for (Cell target : targets) {
+            int bucketX = Math.floorDiv(target.x, bucketSize);
+            int bucketY = Math.floorDiv(target.y, bucketSize);
+
+            buckets.computeIfAbsent(pack(bucketX, bucketY), key -> new ArrayList<>()).add(target);
+            minBucketX = Math.min(minBucketX, bucketX);
+            maxBucketX = Math.max(maxBucketX, bucketX);
+            minBucketY = Math.min(minBucketY, bucketY);
+            maxBucketY = Math.max(maxBucketY, bucketY);
+        }
+    }
+
+    public boolean contains(int x, int y) {
+        return positions.contains(pack(x, y));
+    }
+
+    public boolean isEmpty() {
+        return targets.isEmpty();
+    }
+
+    public int size() {
+        return targets.size();
+    }
+
+    /**
+     * Obtain the distance from the given position to the nearest goal
+     * @param from
+     * @param distanceAlgorithm Must be bounded below by the Chebyshev distance
+     * @return The distance, or Double.POSITIVE_INFINITY if the set is empty
+     */
+    public double getMinDistance(Cell from, DistanceAlgorithm distanceAlgorithm) {
+        double minDistance = Double.POSITIVE_INFINITY;
+
+        if (targets.size() <= LINEAR_SCAN_LIMIT) {
+            for (Cell target : targets) {
+                minDistance = Math.min(minDistance, distanceAlgorithm.getDistance(from, target));
+            }
+            return minDistance;
+        }
+
+        int centerX = Math.floorDiv(from.x, bucketSize);
+        int centerY = Math.floorDiv(from.y, bucketSize);
+        int maxRing = Math.max(Math.max(Math.abs(centerX - minBucketX), Math.abs(centerX - maxBucketX)),
+                Math.max(Math.abs(centerY - minBucketY), Math.abs(centerY - maxBucketY)));
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // Any cell in a bucket of this ring is at least this far away from the given position
+            double ringLowerBound = ring == 0 ? 0 : (double) (ring - 1) * bucketSize + 1;
+            if (ringLowerBound >= minDistance) {
+                break;
+            }
+
+            for (int bucketX = centerX - ring; bucketX <= centerX + ring; bucketX++) {
+                if (bucketX < minBucketX || bucketX > maxBucketX) {
+                    continue;
+                }
+
+                // Inner columns of the ring only have their top and bottom buckets on the ring
+                boolean isSideColumn = bucketX == centerX - ring || bucketX == centerX + ring;
+                int step = isSideColumn ? 1 : Math.max(1, 2 * ring);
+
+                for (int bucketY = centerY - ring; bucketY <= centerY + ring; bucketY += step) {
+                    List<Cell> bucket = buckets.get(pack(bucketX, bucketY));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (Cell target : bucket) {
+                        minDistance = Math.min(minDistance, distanceAlgorithm.getDistance(from, target));
+                    }
+                }
+            }
+        }
+
+        return minDistance;
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
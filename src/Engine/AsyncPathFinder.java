@@ -0,0 +1,191 @@
+package Engine;
+
+import DataStructures.Cell;
+import DataStructures.MapSnapshot;
+
+import java.util.LinkedList;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AsyncPathFinder: Asynchronous facade over an engine, running the queries on a given executor and collapsing
+ * identical concurrent queries into a single search
+ *
+ * A query asked while an identical one (same starting point, goal point and snapshot of the map) is queued or
+ * running joins it instead of starting a search of its own, and gets a copy of its result. Once a search is over,
+ * the next identical query starts a new one: results are shared, never cached. The snapshot is pinned when the
+ * query is asked, and the search runs on that very snapshot, whatever edits land before it starts.
+ * Snapshots are told apart by identity, as distinct snapshots may carry the same version number.
+ *
+ * The executor is up to the caller, e.g. a fixed pool of one thread per core for CPU-bound searches, or
+ * Service.VirtualThreads for a thread per search.
+ *
+ * Metrics:
+ *   Queue depth       searches submitted to the executor but not started yet
+ *   Coalescing ratio  share of the queries that joined a search of an identical query
+ */
+
+public class AsyncPathFinder {
+    private final PathFindingEngine engine;
+    private final Executor executor;
+    private final SearchBudget budget;
+
+    private final ConcurrentHashMap<QueryKey, CompletableFuture<PathResult>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong queueDepth = new AtomicLong();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder coalescedQueries = new LongAdder();
+
+    /** Identity of a query, two queries of equal keys get the same result */
+    private static class QueryKey {
+        final int startX, startY, goalX, goalY;
+        final MapSnapshot grid;
+
+        QueryKey(Cell startPos, Cell goalPos, MapSnapshot grid) {
+            this.startX = startPos.x;
+            this.startY = startPos.y;
+            this.goalX = goalPos.x;
+            this.goalY = goalPos.y;
+            this.grid = grid;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey other = (QueryKey) o;
+            return startX == other.startX && startY == other.startY && goalX == other.goalX &&
+                    goalY == other.goalY && grid == other.grid;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(startX, startY, goalX, goalY, System.identityHashCode(grid));
+        }
+    }
+
+    public AsyncPathFinder(PathFindingEngine engine, Executor executor) {
+        this(engine, executor, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * @param engine
+     * @param executor Executor running the searches
+     * @param budget Budget of every search
+     */
+    public AsyncPathFinder(PathFindingEngine engine, Executor executor, SearchBudget budget) {
+        this.engine = engine;
+        this.executor = executor;
+        this.budget = budget;
+    }
+
+    public SearchBudget getBudget() {
+        return budget;
+    }
+
+    public PathFindingEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Query the path between the given positions asynchronously, on the current snapshot of the map
+     * @param startPos
+     * @param goalPos
+     * @return Future of the result. Every caller gets its own future & path list, so callers may cancel or modify
+     *         them without affecting each other. The future completes exceptionally if the search failed or could
+     *         not be submitted to the executor
+     */
+    public CompletableFuture<PathResult> query(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos, engine.getMap().getSnapshot());
+    }
+
+    /**
+     * Same as {@link #query(Cell, Cell)}, on the given snapshot of the map
+     * @param startPos
+     * @param goalPos
+     * @param grid Snapshot of the map of the engine
+     * @return
+     */
+    public CompletableFuture<PathResult> query(Cell startPos, Cell goalPos, MapSnapshot grid) {
+        queries.increment();
+        QueryKey key = new QueryKey(startPos, goalPos, grid);
+
+        CompletableFuture<PathResult> search = new CompletableFuture<>();
+        CompletableFuture<PathResult> running = inFlight.putIfAbsent(key, search);
+        if (running != null) {
+            coalescedQueries.increment();
+            return running.thenApply(AsyncPathFinder::copy);
+        }
+
+        Cell start = new Cell(startPos.x, startPos.y), goal = new Cell(goalPos.x, goalPos.y);
+        queueDepth.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queueDepth.decrementAndGet();
+                try {
+                    PathResult result = engine.query(start, goal, budget, grid);
+                    // Stop accepting joiners first, so that none of them misses the result
+                    inFlight.remove(key, search);
+                    search.complete(result);
+                } catch (Throwable e) {
+                    inFlight.remove(key, search);
+                    search.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            queueDepth.decrementAndGet();
+            inFlight.remove(key, search);
+            search.completeExceptionally(e);
+        }
+
+        return search.thenApply(AsyncPathFinder::copy);
+    }
+
+    private static PathResult copy(PathResult result) {
+        return new PathResult(new LinkedList<>(result.path), result.expansions, result.status);
+    }
+
+    /** ---------- Metrics ---------- */
+
+    /**
+     * @return Number of searches submitted to the executor but not started yet
+     */
+    public long getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * @return Number of searches queued or running
+     */
+    public int getInFlightSearches() {
+        return inFlight.size();
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    /**
+     * @return Number of queries that joined the search of an identical query
+     */
+    public long getCoalescedQueries() {
+        return coalescedQueries.sum();
+    }
+
+    /**
+     * @return Share of the queries that joined the search of an identical query, between 0 and 1
+     */
+    public double getCoalescingRatio() {
+        long total = queries.sum();
+        return total == 0 ? 0 : (double) coalescedQueries.sum() / total;
+    }
+}
@@ -0,0 +1,123 @@
+package Engine;
+
+import DataStructures.Cell;
+import DataStructures.Direction;
+import DataStructures.MapSnapshot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * GridDistances: Exact minimum costs from a starting point to every cell of a map, by a plain Dijkstra search over
+ * the 8-connected grid (moves allowed by {@link MapSnapshot#reachable})
+ *
+ * Much slower than any engine, it shares no code with them and serves as the reference the benchmarks check path
+ * costs against.
+ */
+
+public class GridDistances {
+    private final MapSnapshot grid;
+    private final Cell startPos;
+    private final double[] distances;
+    private final int[] diagonalSteps;      // Of the minimum-cost path found to each cell
+
+    /**
+     * Search from the given starting point until every reachable cell is settled
+     * @param grid
+     * @param startPos
+     */
+    public GridDistances(MapSnapshot grid, Cell startPos) {
+        this(grid, startPos, null);
+    }
+
+    /**
+     * Search from the given starting point until the given goal is settled. Only the distances up to the one of
+     * the goal are then exact, the others being upper bounds
+     * @param grid
+     * @param startPos
+     * @param goalPos Null to settle every reachable cell
+     */
+    public GridDistances(MapSnapshot grid, Cell startPos, Cell goalPos) {
+        this.grid = grid;
+        this.startPos = startPos;
+        this.distances = new double[grid.getWidth() * grid.getHeight()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        this.diagonalSteps = new int[distances.length];
+
+        if (grid.isObstacleAt(startPos.x, startPos.y)) {
+            return;
+        }
+
+        // Entries are {distance, index}, outdated ones being skipped when polled
+        PriorityQueue<double[]> queue = new PriorityQueue<>((a, b) -> Double.compare(a[0], b[0]));
+        distances[startPos.y * grid.getWidth() + startPos.x] = 0;
+        queue.offer(new double[] {0, startPos.y * grid.getWidth() + startPos.x});
+
+        while (!queue.isEmpty()) {
+            double[] entry = queue.poll();
+            int idx = (int) entry[1];
+            if (entry[0] > distances[idx]) {
+                continue;
+            }
+            if (goalPos != null && idx == goalPos.y * grid.getWidth() + goalPos.x) {
+                break;
+            }
+
+            int x = idx % grid.getWidth(), y = idx / grid.getWidth();
+            for (Direction direction : Direction.values()) {
+                int nextX = x + direction.xOffset, nextY = y + direction.yOffset;
+                if (!grid.reachable(x, y, nextX, nextY)) {
+                    continue;
+                }
+
+                boolean isDiagonal = Direction.isDiagonal(direction.xOffset, direction.yOffset);
+                double distance = entry[0] + (isDiagonal ? Math.sqrt(2) : 1);
+                int nextIdx = nextY * grid.getWidth() + nextX;
+                if (distance < distances[nextIdx]) {
+                    distances[nextIdx] = distance;
+                    diagonalSteps[nextIdx] = diagonalSteps[idx] + (isDiagonal ? 1 : 0);
+                    queue.offer(new double[] {distance, nextIdx});
+                }
+            }
+        }
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return Minimum cost from the starting point to the given position, infinite if unreachable
+     */
+    public double getDistance(int x, int y) {
+        return grid.isOutsideMap(x, y) ? Double.POSITIVE_INFINITY : distances[y * grid.getWidth() + x];
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return Number of diagonal steps of a minimum-cost path from the starting point to the given position, 0 if
+     *         unreachable
+     */
+    public int getDiagonalSteps(int x, int y) {
+        return grid.isOutsideMap(x, y) ? 0 : diagonalSteps[y * grid.getWidth() + x];
+    }
+
+    /**
+     * Check that the given path, as returned by an engine, is a minimum-cost one
+     * @param goalPos
+     * @param path
+     * @param tolerance Cost deviation accepted
+     * @return
+     */
+    public boolean isOptimal(Cell goalPos, List<Cell> path, double tolerance) {
+        double distance = getDistance(goalPos.x, goalPos.y);
+        if (path.isEmpty()) {
+            return (startPos.x == goalPos.x && startPos.y == goalPos.y) || distance == Double.POSITIVE_INFINITY;
+        }
+        return Math.abs(PathFindingEngine.getPathCost(startPos, path) - distance) <= tolerance;
+    }
+
+    public Cell getStartPos() {
+        return startPos;
+    }
+}
@@ -0,0 +1,141 @@
+package Engine;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * PathFindingEngine: Common entry point of the path-finding algorithms, so that callers (e.g. the socket
+ * service) do not need to know which algorithm answers the queries of a given map
+ */
+
+public interface PathFindingEngine {
+    /**
+     * Finding the minimum-cost path from the starting point to the goal point
+     * @param startPos
+     * @param goalPos
+     * @return Turning points of the path (starting point excluded), or an empty list if no path exists
+     */
+    List<Cell> findPath(Cell startPos, Cell goalPos);
+
+    /**
+     * Same as {@link #findPath}, also reporting statistics of the search
+     * @param startPos
+     * @param goalPos
+     * @return
+     */
+    default PathResult query(Cell startPos, Cell goalPos) {
+        List<Cell> path = findPath(startPos, goalPos);
+        return new PathResult(path, PathResult.UNKNOWN_EXPANSIONS, PathResult.getStatus(startPos, goalPos, path));
+    }
+
+    /**
+     * Same as {@link #query}, giving up with a partial path once the given budget is exceeded
+     *
+     * Note: This default implementation ignores the budget, engines should override it
+     *
+     * @param startPos
+     * @param goalPos
+     * @param budget
+     * @return
+     */
+    default PathResult query(Cell startPos, Cell goalPos, SearchBudget budget) {
+        return query(startPos, goalPos);
+    }
+
+    /**
+     * Same as {@link #query(Cell, Cell, SearchBudget)}, on the given snapshot of the map rather than its current
+     * one, e.g. for sharing a search between callers who asked on that very snapshot
+     *
+     * Note: This default implementation answers on the current snapshot, engines should override it
+     *
+     * @param startPos
+     * @param goalPos
+     * @param budget
+     * @param grid Snapshot of {@link #getMap()}
+     * @return
+     */
+    default PathResult query(Cell startPos, Cell goalPos, SearchBudget budget, MapSnapshot grid) {
+        return query(startPos, goalPos, budget);
+    }
+
+    /**
+     * Finding the minimum-cost paths from the starting point to the nearest of the given targets
+     *
+     * Note: This default implementation runs one query per target, engines should override it with a single search
+     *
+     * @param startPos
+     * @param targets
+     * @param targetCount Number of targets to reach, none for 0
+     * @return Paths to the (at most targetCount) nearest reachable targets, in order of increasing cost. Each path
+     *         ends at its target, an empty path means that the starting point is one of the targets
+     * @throws IllegalArgumentException If targetCount is negative
+     */
+    default List<List<Cell>> findPathsToNearest(Cell startPos, Collection<Cell> targets, int targetCount) {
+        if (targetCount < 0) {
+            throw new IllegalArgumentException("Negative number of targets: " + targetCount);
+        }
+        if (targetCount == 0) {
+            return new ArrayList<>();
+        }
+
+        List<List<Cell>> paths = new ArrayList<>();
+        List<Double> costs = new ArrayList<>();
+
+        // Cells are equal by coordinates, so duplicated targets are queried once
+        for (Cell target : new LinkedHashSet<>(targets)) {
+            List<Cell> path = findPath(startPos, target);
+            if (path.isEmpty() && (startPos.x != target.x || startPos.y != target.y)) {
+                continue;
+            }
+
+            double cost = getPathCost(startPos, path);
+
+            // Insert in order of increasing cost
+            int idx = 0;
+            while (idx < costs.size() && costs.get(idx) <= cost) {
+                idx++;
+            }
+            costs.add(idx, cost);
+            paths.add(idx, path);
+        }
+
+        return new ArrayList<>(paths.subList(0, Math.min(targetCount, paths.size())));
+    }
+
+    /**
+     * @return The map the queries are answered on
+     */
+    Map getMap();
+
+    /**
+     * @return Short description of the algorithm & strategies answering the queries, recorded in query traces
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Obtain the octile cost of a path, as returned by {@link #findPath}
+     * @param startPos
+     * @param path
+     * @return
+     */
+    static double getPathCost(Cell startPos, List<Cell> path) {
+        // Consecutive turning points are aligned horizontally, vertically or diagonally
+        double cost = 0;
+        Cell prev = startPos;
+        for (Cell pathCell : path) {
+            int dx = Math.abs(pathCell.x - prev.x);
+            int dy = Math.abs(pathCell.y - prev.y);
+            cost += Math.max(dx, dy) + (Math.sqrt(2) - 1) * Math.min(dx, dy);
+            prev = pathCell;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,43 @@
+package Engine;
+
+import DataStructures.Cell;
+
+import java.util.List;
+
+/**
+ * PathResult: A path along with statistics of the search that found it
+ */
+
+public class PathResult {
+    /** Value of expansions for engines that do not count them */
+    public static final long UNKNOWN_EXPANSIONS = -1;
+
+    public enum Status {
+        /** The path reaches the goal point (empty if the starting point is the goal point) */
+        COMPLETE,
+        /** The goal point is unreachable, the path is empty */
+        NO_PATH,
+        /** The search ran out of its {@link SearchBudget}, the path is a partial path towards the goal point */
+        BUDGET_EXCEEDED
+    }
+
+    /** Turning points of the path (starting point excluded), empty if no path exists */
+    public final List<Cell> path;
+    /** Number of nodes taken out of the open list */
+    public final long expansions;
+    public final Status status;
+
+    public PathResult(List<Cell> path, long expansions, Status status) {
+        this.path = path;
+        this.expansions = expansions;
+        this.status = status;
+    }
+
+    /**
+     * @return Status of a search that ran to completion, given the path it returned
+     */
+    public static Status getStatus(Cell startPos, Cell goalPos, List<Cell> path) {
+        boolean isSameCell = startPos.x == goalPos.x && startPos.y == goalPos.y;
+        return path.isEmpty() && !isSameCell ? Status.NO_PATH : Status.COMPLETE;
+    }
+}
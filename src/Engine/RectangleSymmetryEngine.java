@@ -0,0 +1,441 @@
+package Engine;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import DataStructures.RadixHeap;
+import HeuristicStrategy.FixedPointOctileDistance;
+import Preprocessing.ComponentIndex;
+import Preprocessing.IndexSnapshot;
+import Preprocessing.IndexSnapshot.Section;
+import Preprocessing.ParallelPreprocessor;
+import Preprocessing.RectangleDecomposition;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * RectangleSymmetryEngine: Answers queries with Rectangular Symmetry Reduction (RSR), i.e. A* over the perimeters
+ * of the empty rectangles of a {@link RectangleDecomposition}, crossing rectangle interiors in one step
+ *
+ * Inside an empty rectangle any octile path is a shortest path, so the interior cells are never expanded. A
+ * perimeter node generates its grid neighbors except the interior ones, plus macro edges across its rectangle: to
+ * the nodes of the opposite side within diagonal reach, and to the ends of its two inward diagonals. With the moves
+ * along the perimeter, these make up an octile path between any two perimeter nodes, so the search stays optimal.
+ * A starting point inside a rectangle is connected to the whole perimeter, a goal point to every node of its
+ * rectangle. Costs are in the fixed-point units of {@link FixedPointOctileDistance}, on a radix heap open list.
+ *
+ * Like {@link SubgoalGraphEngine}, the decomposition is computed at construction and recomputed by the first query
+ * seeing a new version of the map.
+ *
+ * Reference: Daniel Harabor, Adi Botea, Philip Kilby, "Path Symmetries in Undirected Uniform-cost Grids" (SARA 2011)
+ */
+
+public class RectangleSymmetryEngine implements PathFindingEngine {
+    /** Indexes the engine is made of, see {@link #RectangleSymmetryEngine(Map, IndexSnapshot)} */
+    public static final Set<Section> SECTIONS =
+            Collections.unmodifiableSet(EnumSet.of(Section.RECTANGLES, Section.COMPONENTS));
+
+    private static final int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] DY = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private final Map map;
+    private final ParallelPreprocessor preprocessor;
+    private volatile Index index;
+
+    /**
+     * Decomposition & connected components of one version of the map, with the search states of its queries
+     *
+     * The search nodes are the perimeter cells, numbered rectangle by rectangle, followed by the starting point &
+     * the goal point when they lie inside a rectangle: the search states are sized to the perimeter, not the grid.
+     */
+    private static class Index {
+        final RectangleDecomposition rectangles;
+        final ComponentIndex components;
+        final int width;
+        /** Node of the first perimeter cell of every rectangle */
+        final int[] perimeterOffsets;
+        /** Position (y * width + x) of every perimeter node */
+        final int[] perimeterCells;
+        final SearchState.Pool states;
+
+        Index(RectangleDecomposition rectangles, ComponentIndex components) {
+            this.rectangles = rectangles;
+            this.components = components;
+            this.width = rectangles.getSnapshot().getWidth();
+            this.perimeterOffsets = new int[rectangles.getRectangleCount()];
+            this.perimeterCells = new int[Math.toIntExact(rectangles.getPerimeterCellCount())];
+
+            int offset = 0;
+            for (int rectangle = 0; rectangle < perimeterOffsets.length; rectangle++) {
+                perimeterOffsets[rectangle] = offset;
+                int minX = rectangles.getMinX(rectangle), minY = rectangles.getMinY(rectangle);
+                int maxX = rectangles.getMaxX(rectangle), maxY = rectangles.getMaxY(rectangle);
+
+                for (int y = minY; y <= maxY; y++) {
+                    boolean isSide = y == minY || y == maxY || maxX - minX < 2;
+                    for (int x = minX; x <= maxX; x = isSide || x == maxX ? x + 1 : maxX) {
+                        perimeterCells[getPerimeterNode(rectangle, x, y)] = y * width + x;
+                        offset++;
+                    }
+                }
+            }
+
+            this.states = new SearchState.Pool(perimeterCells.length + 2, false);
+        }
+
+        /**
+         * @return Node of the given perimeter cell of the given rectangle: the rows of a rectangle without interior,
+         *         otherwise its bottom row, its top row, then the ends of the rows in between
+         */
+        int getPerimeterNode(int rectangle, int x, int y) {
+            int minX = rectangles.getMinX(rectangle), minY = rectangles.getMinY(rectangle);
+            int maxX = rectangles.getMaxX(rectangle), maxY = rectangles.getMaxY(rectangle);
+            int offset = perimeterOffsets[rectangle], rectangleWidth = maxX - minX + 1;
+
+            if (maxX - minX < 2 || maxY - minY < 2 || y == minY) {
+                return offset + (y - minY) * rectangleWidth + x - minX;
+            }
+            if (y == maxY) {
+                return offset + rectangleWidth + x - minX;
+            }
+            return offset + 2 * rectangleWidth + 2 * (y - minY - 1) + (x == minX ? 0 : 1);
+        }
+    }
+
+    public RectangleSymmetryEngine(Map map) {
+        this(map, new ParallelPreprocessor(ForkJoinPool.commonPool()));
+    }
+
+    public RectangleSymmetryEngine(Map map, ParallelPreprocessor preprocessor) {
+        this.map = map;
+        this.preprocessor = preprocessor;
+        this.index = computeIndex(map.getSnapshot());
+    }
+
+    /**
+     * Start from precomputed indexes, e.g. loaded from a file by {@link IndexSnapshot#load}
+     * @param map
+     * @param indexes Must hold the {@link #SECTIONS}
+     */
+    public RectangleSymmetryEngine(Map map, IndexSnapshot indexes) {
+        this.map = map;
+        this.preprocessor = new ParallelPreprocessor(ForkJoinPool.commonPool());
+        this.index = new Index(indexes.getRectangles(), indexes.getComponents());
+    }
+
+    private Index computeIndex(MapSnapshot grid) {
+        return new Index(RectangleDecomposition.compute(grid), ComponentIndex.compute(grid, preprocessor));
+    }
+
+    /**
+     * Obtain the index of the given version of the map, recomputing it if the map has been edited. The index of
+     * a snapshot older than the current one (pinned by a query meanwhile) is computed for that query only
+     */
+    private Index getIndex(MapSnapshot grid) {
+        Index current = index;
+
+        if (current.rectangles.getSnapshot() != grid) {
+            synchronized (this) {
+                current = index;
+                if (current.rectangles.getSnapshot() != grid) {
+                    current = computeIndex(grid);
+                    if (grid == map.getSnapshot()) {
+                        index = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    public RectangleDecomposition getDecomposition() {
+        return getIndex(map.getSnapshot()).rectangles;
+    }
+
+    @Override
+    public Map getMap() {
+        return map;
+    }
+
+    @Override
+    public String getName() {
+        return "RSR";
+    }
+
+    @Override
+    public List<Cell> findPath(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos).path;
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos, SearchBudget.UNLIMITED);
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget) {
+        return query(startPos, goalPos, budget, map.getSnapshot());
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget, MapSnapshot grid) {
+        Index current = getIndex(grid);
+        RectangleDecomposition rectangles = current.rectangles;
+
+        if (startPos.x == goalPos.x && startPos.y == goalPos.y) {
+            return new PathResult(new LinkedList<>(), 0, PathResult.Status.COMPLETE);
+        }
+        if (!current.components.isConnected(startPos.x, startPos.y, goalPos.x, goalPos.y)) {
+            return new PathResult(new LinkedList<>(), 0, PathResult.Status.NO_PATH);
+        }
+
+        int goalRectangle = rectangles.getRectangle(goalPos.x, goalPos.y);
+        if (rectangles.getRectangle(startPos.x, startPos.y) == goalRectangle) {
+            // Both points in the same empty rectangle: the octile path is free
+            LinkedList<Cell> path = new LinkedList<>();
+            addOctilePath(path, startPos, startPos.x, startPos.y, goalPos.x, goalPos.y);
+            return new PathResult(path, 0, PathResult.Status.COMPLETE);
+        }
+
+        SearchState state = current.states.acquire();
+        try {
+            return search(new Search(current, grid, state, startPos, goalPos, goalRectangle), startPos, goalPos,
+                    budget);
+        } finally {
+            current.states.release(state);
+        }
+    }
+
+    private static PathResult search(Search search, Cell startPos, Cell goalPos, SearchBudget budget) {
+        int startNode = search.getNode(startPos.x, startPos.y);
+        search.state.open(startNode, 0, -1);
+        search.openSet.add(estimate(startPos.x, startPos.y, goalPos), startNode);
+        int goalNode = search.getNode(goalPos.x, goalPos.y);
+        long expansions = 0;
+
+        // Only a budgeted search keeps track of the expanded node closest to the goal
+        SearchBudget.Tracker tracker = budget.isUnlimited() ? null : budget.start();
+        int closestNode = startNode;
+        long closestDistance = estimate(startPos.x, startPos.y, goalPos);
+
+        while (!search.openSet.isEmpty()) {
+            int node = search.openSet.poll();
+            if (search.state.isClosed(node)) {
+                continue;
+            }
+            search.state.close(node);
+            expansions++;
+
+            if (node == goalNode) {
+                return new PathResult(buildPath(search, startPos, startNode, goalNode), expansions,
+                        PathResult.Status.COMPLETE);
+            }
+
+            if (tracker != null) {
+                long distance = estimate(search.getX(node), search.getY(node), goalPos);
+                if (distance < closestDistance) {
+                    closestNode = node;
+                    closestDistance = distance;
+                }
+
+                if (tracker.check(expansions, search.openSet.size()) != null) {
+                    return new PathResult(buildPath(search, startPos, startNode, closestNode), expansions,
+                            PathResult.Status.BUDGET_EXCEEDED);
+                }
+            }
+            search.expand(node);
+        }
+
+        return new PathResult(new LinkedList<>(), expansions, PathResult.Status.NO_PATH);
+    }
+
+    /**
+     * Search: The state of one query
+     */
+    private static class Search {
+        final Index index;
+        final MapSnapshot grid;
+        final RectangleDecomposition rectangles;
+        final Cell startPos, goalPos;
+        final int goalRectangle, width;
+        /** Nodes of the starting & goal points when inside their rectangle */
+        final int startInteriorNode, goalInteriorNode;
+        final SearchState state;
+        final RadixHeap<Integer> openSet = new RadixHeap<>();
+
+        Search(Index index, MapSnapshot grid, SearchState state, Cell startPos, Cell goalPos, int goalRectangle) {
+            this.index = index;
+            this.grid = grid;
+            this.rectangles = index.rectangles;
+            this.state = state;
+            this.startPos = startPos;
+            this.goalPos = goalPos;
+            this.goalRectangle = goalRectangle;
+            this.width = grid.getWidth();
+            this.startInteriorNode = index.perimeterCells.length;
+            this.goalInteriorNode = index.perimeterCells.length + 1;
+        }
+
+        /**
+         * @return Node of the given perimeter cell, or of the starting or goal point
+         */
+        int getNode(int x, int y) {
+            int rectangle = rectangles.getRectangle(x, y);
+            int minX = rectangles.getMinX(rectangle), minY = rectangles.getMinY(rectangle);
+            int maxX = rectangles.getMaxX(rectangle), maxY = rectangles.getMaxY(rectangle);
+
+            if (x > minX && x < maxX && y > minY && y < maxY) {
+                return x == goalPos.x && y == goalPos.y ? goalInteriorNode : startInteriorNode;
+            }
+            return index.getPerimeterNode(rectangle, x, y);
+        }
+
+        int getX(int node) {
+            return node == startInteriorNode ? startPos.x
+                    : node == goalInteriorNode ? goalPos.x : index.perimeterCells[node] % width;
+        }
+
+        int getY(int node) {
+            return node == startInteriorNode ? startPos.y
+                    : node == goalInteriorNode ? goalPos.y : index.perimeterCells[node] / width;
+        }
+
+        void expand(int node) {
+            int x = getX(node), y = getY(node);
+            int rectangle = rectangles.getRectangle(x, y);
+            int minX = rectangles.getMinX(rectangle), minY = rectangles.getMinY(rectangle);
+            int maxX = rectangles.getMaxX(rectangle), maxY = rectangles.getMaxY(rectangle);
+
+            if (node == startInteriorNode) {
+                // Only the starting point: connect it to the whole perimeter of its rectangle
+                for (int perimeterX = minX; perimeterX <= maxX; perimeterX++) {
+                    relax(node, x, y, perimeterX, minY);
+                    relax(node, x, y, perimeterX, maxY);
+                }
+                for (int perimeterY = minY + 1; perimeterY < maxY; perimeterY++) {
+                    relax(node, x, y, minX, perimeterY);
+                    relax(node, x, y, maxX, perimeterY);
+                }
+                return;
+            }
+
+            // Grid neighbors, skipping the interiors (an interior neighbor always belongs to this rectangle)
+            for (int i = 0; i < DX.length; i++) {
+                int nextX = x + DX[i], nextY = y + DY[i];
+                if (!grid.reachable(x, y, nextX, nextY)) {
+                    continue;
+                }
+                if (rectangles.isInterior(nextX, nextY) && !(nextX == goalPos.x && nextY == goalPos.y)) {
+                    continue;
+                }
+                relax(node, x, y, nextX, nextY);
+            }
+
+            // Macro edges across the rectangle, if it has an interior
+            if (maxX - minX >= 2 && maxY - minY >= 2) {
+                int rectangleWidth = maxX - minX, rectangleHeight = maxY - minY;
+                if (y == minY || y == maxY) {
+                    int oppositeY = y == minY ? maxY : minY, inwardY = y == minY ? 1 : -1;
+                    for (int oppositeX = Math.max(minX, x - rectangleHeight);
+                         oppositeX <= Math.min(maxX, x + rectangleHeight); oppositeX++) {
+                        relax(node, x, y, oppositeX, oppositeY);
+                    }
+                    int leftSteps = Math.min(x - minX, rectangleHeight);
+                    int rightSteps = Math.min(maxX - x, rectangleHeight);
+                    relax(node, x, y, x - leftSteps, y + inwardY * leftSteps);
+                    relax(node, x, y, x + rightSteps, y + inwardY * rightSteps);
+                }
+                if (x == minX || x == maxX) {
+                    int oppositeX = x == minX ? maxX : minX, inwardX = x == minX ? 1 : -1;
+                    for (int oppositeY = Math.max(minY, y - rectangleWidth);
+                         oppositeY <= Math.min(maxY, y + rectangleWidth); oppositeY++) {
+                        relax(node, x, y, oppositeX, oppositeY);
+                    }
+                    int downSteps = Math.min(y - minY, rectangleWidth);
+                    int upSteps = Math.min(maxY - y, rectangleWidth);
+                    relax(node, x, y, x + inwardX * downSteps, y - downSteps);
+                    relax(node, x, y, x + inwardX * upSteps, y + upSteps);
+                }
+            }
+
+            if (rectangle == goalRectangle) {
+                relax(node, x, y, goalPos.x, goalPos.y);
+            }
+        }
+
+        void relax(int node, int x, int y, int nextX, int nextY) {
+            if (nextX == x && nextY == y) {
+                return;
+            }
+            int next = getNode(nextX, nextY);
+            long nextGCost = state.getGCost(node)
+                    + FixedPointOctileDistance.getFixedPointDistance(x, y, nextX, nextY);
+            if (state.relax(next, nextGCost, node)) {
+                openSet.add(nextGCost + estimate(nextX, nextY, goalPos), next);
+            }
+        }
+    }
+
+    /**
+     * Turn the edges of the path found to the given node (the goal node, or any expanded node) into turning points
+     */
+    private static List<Cell> buildPath(Search search, Cell startPos, int startNode, int endNode) {
+        List<Integer> nodes = new ArrayList<>();
+        for (int node = endNode; node != startNode; node = search.state.getParent(node)) {
+            nodes.add(node);
+        }
+
+        LinkedList<Cell> path = new LinkedList<>();
+        int fromX = startPos.x, fromY = startPos.y;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+            int toX = search.getX(nodes.get(i)), toY = search.getY(nodes.get(i));
+            addOctilePath(path, startPos, fromX, fromY, toX, toY);
+            fromX = toX;
+            fromY = toY;
+        }
+        return path;
+    }
+
+    /**
+     * Append the turning points of the diagonal-first octile path between two positions of the same empty
+     * rectangle, dropping the points lying on a straight line between their neighbors
+     */
+    private static void addOctilePath(LinkedList<Cell> path, Cell startPos, int fromX, int fromY, int toX, int toY) {
+        int dx = toX - fromX, dy = toY - fromY;
+        int diagonalSteps = Math.min(Math.abs(dx), Math.abs(dy));
+
+        if (diagonalSteps > 0 && diagonalSteps < Math.max(Math.abs(dx), Math.abs(dy))) {
+            addTurningPoint(path, startPos, new Cell(fromX + Integer.signum(dx) * diagonalSteps,
+                    fromY + Integer.signum(dy) * diagonalSteps));
+        }
+        addTurningPoint(path, startPos, new Cell(toX, toY));
+    }
+
+    private static void addTurningPoint(LinkedList<Cell> path, Cell startPos, Cell cell) {
+        if (path.size() >= 1) {
+            Cell last = path.getLast();
+            Cell beforeLast = path.size() >= 2 ? path.get(path.size() - 2) : startPos;
+            if (getDirection(beforeLast, last) == getDirection(last, cell)) {
+                path.removeLast();
+            }
+        }
+        path.add(cell);
+    }
+
+    /**
+     * @return Direction between two aligned positions, encoded as 3 * (dx + 1) + (dy + 1) with dx, dy in [-1, 1]
+     */
+    private static int getDirection(Cell from, Cell to) {
+        return 3 * (Integer.signum(to.x - from.x) + 1) + Integer.signum(to.y - from.y) + 1;
+    }
+
+    private static long estimate(int x, int y, Cell goalPos) {
+        return FixedPointOctileDistance.getFixedPointDistance(x, y, goalPos.x, goalPos.y);
+    }
+}
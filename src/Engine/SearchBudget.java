@@ -0,0 +1,178 @@
+package Engine;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SearchBudget: Per-query limits of a search (expansions, open nodes, wall-clock time), along with counters of the
+ * queries that exceeded them
+ *
+ * A search running out of its budget stops and returns the partial path to the expanded node closest to the goal
+ * point (by the heuristic), with status {@link PathResult.Status#BUDGET_EXCEEDED}. Open nodes are the entries held
+ * by the open list, the dominant memory cost of a search.
+ *
+ * A budget is meant to be shared by all queries of a map, so that its counters tell how often the limits of that
+ * map are hit. The counters are {@link LongAdder}s, cheap to update from many search threads.
+ */
+
+public class SearchBudget {
+    /** No limit at all */
+    public static final SearchBudget UNLIMITED = new SearchBudget();
+
+    /** Expansions between two reads of the clock */
+    private static final int CLOCK_CHECK_INTERVAL = 64;
+
+    public enum Limit {
+        EXPANSIONS, OPEN_NODES, TIME
+    }
+
+    private long maxExpansions = Long.MAX_VALUE;
+    private long maxOpenNodes = Long.MAX_VALUE;
+    private long maxNanos = Long.MAX_VALUE;
+
+    private final LongAdder budgetedQueries = new LongAdder();
+    private final LongAdder[] exceededQueries = new LongAdder[Limit.values().length];
+
+    public SearchBudget() {
+        for (int i = 0; i < exceededQueries.length; i++) {
+            exceededQueries[i] = new LongAdder();
+        }
+    }
+
+    public SearchBudget initMaxExpansions(long maxExpansions) {
+        checkModifiable();
+        this.maxExpansions = checkPositive(maxExpansions);
+        return this;
+    }
+
+    public SearchBudget initMaxOpenNodes(long maxOpenNodes) {
+        checkModifiable();
+        this.maxOpenNodes = checkPositive(maxOpenNodes);
+        return this;
+    }
+
+    public SearchBudget initMaxTimeMillis(long maxTimeMillis) {
+        checkModifiable();
+        this.maxNanos = checkPositive(maxTimeMillis) * 1_000_000L;
+        return this;
+    }
+
+    private void checkModifiable() {
+        if (this == UNLIMITED) {
+            throw new UnsupportedOperationException("The unlimited budget cannot be changed");
+        }
+    }
+
+    private static long checkPositive(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Search limits must be positive: " + limit);
+        }
+        return limit;
+    }
+
+    /**
+     * @return Maximum number of expansions of a query, Long.MAX_VALUE if unlimited
+     */
+    public long getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    /**
+     * @return Maximum number of open nodes of a query, Long.MAX_VALUE if unlimited
+     */
+    public long getMaxOpenNodes() {
+        return maxOpenNodes;
+    }
+
+    /**
+     * @return Maximum duration of a query, Long.MAX_VALUE if unlimited
+     */
+    public long getMaxTimeMillis() {
+        return maxNanos == Long.MAX_VALUE ? Long.MAX_VALUE : maxNanos / 1_000_000L;
+    }
+
+    public boolean isUnlimited() {
+        return maxExpansions == Long.MAX_VALUE && maxOpenNodes == Long.MAX_VALUE && maxNanos == Long.MAX_VALUE;
+    }
+
+    /**
+     * Start tracking the budget of a new query
+     * @return Tracker of the query, to be checked after every expansion. Its clock starts now
+     */
+    public Tracker start() {
+        if (this != UNLIMITED) {
+            budgetedQueries.increment();
+        }
+        return new Tracker();
+    }
+
+    /** ---------- Statistics ---------- */
+
+    public long getBudgetedQueries() {
+        return budgetedQueries.sum();
+    }
+
+    public long getExceededQueries(Limit limit) {
+        return exceededQueries[limit.ordinal()].sum();
+    }
+
+    public long getExceededQueries() {
+        long count = 0;
+        for (LongAdder counter : exceededQueries) {
+            count += counter.sum();
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnlimited()) {
+            return "unlimited";
+        }
+        StringBuilder description = new StringBuilder();
+        if (maxExpansions != Long.MAX_VALUE) {
+            description.append(maxExpansions).append(" expansions, ");
+        }
+        if (maxOpenNodes != Long.MAX_VALUE) {
+            description.append(maxOpenNodes).append(" open nodes, ");
+        }
+        if (maxNanos != Long.MAX_VALUE) {
+            description.append(maxNanos / 1_000_000).append(" ms, ");
+        }
+        return description.substring(0, description.length() - 2);
+    }
+
+    /**
+     * Tracker: The budget of one query. Not thread-safe, a query runs on a single thread
+     */
+    public class Tracker {
+        private final long deadline;
+        private long checks = 0;
+
+        private Tracker() {
+            this.deadline = maxNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + maxNanos;
+        }
+
+        /**
+         * Check the budget after an expansion. The first exceeded limit is counted, the search must then stop
+         * @param expansions Nodes expanded so far
+         * @param openNodes Entries currently held by the open list
+         * @return The exceeded limit, or null if the search may go on
+         */
+        public Limit check(long expansions, long openNodes) {
+            Limit exceeded = null;
+            if (expansions >= maxExpansions) {
+                exceeded = Limit.EXPANSIONS;
+            } else if (openNodes > maxOpenNodes) {
+                exceeded = Limit.OPEN_NODES;
+            } else if (deadline != Long.MAX_VALUE && ++checks % CLOCK_CHECK_INTERVAL == 0 &&
+                    System.nanoTime() - deadline > 0) {
+                exceeded = Limit.TIME;
+            }
+
+            if (exceeded != null) {
+                exceededQueries[exceeded.ordinal()].increment();
+            }
+            return exceeded;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package Engine;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * SearchState: Search arrays over the nodes of an index-based engine (subgoals, perimeter cells), reset in O(1)
+ * between queries by bumping a generation stamp
+ *
+ * Costs are in the fixed-point units of {@link HeuristicStrategy.FixedPointOctileDistance}. States are borrowed from
+ * a {@link Pool} of the engine index for the duration of a query, so that they are reused whichever thread runs the
+ * query (e.g. a new virtual thread per query), and dropped along with the index once the map is edited.
+ */
+
+class SearchState {
+    private int generation = 0;
+    private final int[] openedGeneration, closedGeneration, goalEdgeGeneration, parents;
+    private final long[] gCosts;
+
+    /**
+     * @param nodeCount
+     * @param hasGoalEdges Whether nodes may be marked with {@link #markGoalEdge}
+     */
+    private SearchState(int nodeCount, boolean hasGoalEdges) {
+        openedGeneration = new int[nodeCount];
+        closedGeneration = new int[nodeCount];
+        goalEdgeGeneration = hasGoalEdges ? new int[nodeCount] : null;
+        parents = new int[nodeCount];
+        gCosts = new long[nodeCount];
+    }
+
+    /**
+     * Pool: The states of the queries of one engine index, all sized to its node count
+     *
+     * Note: A pool holds as many states as queries ran concurrently at its peak
+     */
+    static class Pool {
+        private final int nodeCount;
+        private final boolean hasGoalEdges;
+        private final ConcurrentLinkedQueue<SearchState> states = new ConcurrentLinkedQueue<>();
+
+        Pool(int nodeCount, boolean hasGoalEdges) {
+            this.nodeCount = nodeCount;
+            this.hasGoalEdges = hasGoalEdges;
+        }
+
+        /**
+         * Borrow a state cleared for a new query, to give back with {@link #release} once the query is answered
+         * @return
+         */
+        SearchState acquire() {
+            SearchState state = states.poll();
+            if (state == null) {
+                state = new SearchState(nodeCount, hasGoalEdges);
+            }
+            state.clear();
+            return state;
+        }
+
+        void release(SearchState state) {
+            states.add(state);
+        }
+    }
+
+    private void clear() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(openedGeneration, 0);
+            Arrays.fill(closedGeneration, 0);
+            if (goalEdgeGeneration != null) {
+                Arrays.fill(goalEdgeGeneration, 0);
+            }
+            generation = 0;
+        }
+        generation++;
+    }
+
+    void open(int node, long gCost, int parent) {
+        openedGeneration[node] = generation;
+        gCosts[node] = gCost;
+        parents[node] = parent;
+    }
+
+    /**
+     * @return True if the node was opened or its cost decreased
+     */
+    boolean relax(int node, long gCost, int parent) {
+        if (closedGeneration[node] == generation ||
+                (openedGeneration[node] == generation && gCosts[node] <= gCost)) {
+            return false;
+        }
+        open(node, gCost, parent);
+        return true;
+    }
+
+    void close(int node) {
+        closedGeneration[node] = generation;
+    }
+
+    boolean isClosed(int node) {
+        return closedGeneration[node] == generation;
+    }
+
+    /**
+     * Mark the given node as connected to the goal point of the query (used by {@link SubgoalGraphEngine})
+     * @param node
+     */
+    void markGoalEdge(int node) {
+        goalEdgeGeneration[node] = generation;
+    }
+
+    boolean isGoalEdge(int node) {
+        return goalEdgeGeneration[node] == generation;
+    }
+
+    long getGCost(int node) {
+        return gCosts[node];
+    }
+
+    int getParent(int node) {
+        return parents[node];
+    }
+}
@@ -0,0 +1,291 @@
+package Engine;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import DataStructures.RadixHeap;
+import HeuristicStrategy.FixedPointOctileDistance;
+import Preprocessing.ComponentIndex;
+import Preprocessing.IndexSnapshot;
+import Preprocessing.IndexSnapshot.Section;
+import Preprocessing.ParallelPreprocessor;
+import Preprocessing.SubgoalGraph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * SubgoalGraphEngine: Answers queries by searching the precomputed {@link SubgoalGraph} of the map instead of
+ * scanning the grid online as JumpPointSearch does
+ *
+ * A query connects the starting & goal points to the subgoals they direct-h-reach, runs A* over the graph (octile
+ * costs in the fixed-point units of {@link FixedPointOctileDistance}, radix heap open list), then turns every edge
+ * of the result into its straight & diagonal segments.
+ *
+ * The graph suits static maps: it is computed at construction, and recomputed by the first query seeing a new
+ * version of the map (queries pinned to the old version keep using the old graph meanwhile).
+ */
+
+public class SubgoalGraphEngine implements PathFindingEngine {
+    /** Indexes the engine is made of, see {@link #SubgoalGraphEngine(Map, IndexSnapshot)} */
+    public static final Set<Section> SECTIONS =
+            Collections.unmodifiableSet(EnumSet.of(Section.SUBGOAL_GRAPH, Section.COMPONENTS));
+
+    private final Map map;
+    private final ParallelPreprocessor preprocessor;
+    private volatile Index index;
+
+    /** Graph & connected components of one version of the map, with the search states of its queries */
+    private static class Index {
+        final SubgoalGraph graph;
+        final ComponentIndex components;
+        /** Nodes are the subgoals, followed by the starting point & the goal point */
+        final SearchState.Pool states;
+
+        Index(SubgoalGraph graph, ComponentIndex components) {
+            this.graph = graph;
+            this.components = components;
+            this.states = new SearchState.Pool(graph.getSubgoalCount() + 2, true);
+        }
+    }
+
+    public SubgoalGraphEngine(Map map) {
+        this(map, new ParallelPreprocessor(ForkJoinPool.commonPool()));
+    }
+
+    public SubgoalGraphEngine(Map map, ParallelPreprocessor preprocessor) {
+        this.map = map;
+        this.preprocessor = preprocessor;
+        this.index = computeIndex(map.getSnapshot());
+    }
+
+    /**
+     * Start from precomputed indexes, e.g. loaded from a file by {@link IndexSnapshot#load}
+     * @param map
+     * @param indexes Must hold the {@link #SECTIONS}
+     */
+    public SubgoalGraphEngine(Map map, IndexSnapshot indexes) {
+        this.map = map;
+        this.preprocessor = new ParallelPreprocessor(ForkJoinPool.commonPool());
+        this.index = new Index(indexes.getSubgoalGraph(), indexes.getComponents());
+    }
+
+    private Index computeIndex(MapSnapshot grid) {
+        return new Index(SubgoalGraph.compute(grid, preprocessor), ComponentIndex.compute(grid, preprocessor));
+    }
+
+    /**
+     * Obtain the index of the given version of the map, recomputing it if the map has been edited. The index of
+     * a snapshot older than the current one (pinned by a query meanwhile) is computed for that query only
+     */
+    private Index getIndex(MapSnapshot grid) {
+        Index current = index;
+
+        if (current.graph.getSnapshot() != grid) {
+            synchronized (this) {
+                current = index;
+                if (current.graph.getSnapshot() != grid) {
+                    current = computeIndex(grid);
+                    if (grid == map.getSnapshot()) {
+                        index = current;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    public SubgoalGraph getGraph() {
+        return getIndex(map.getSnapshot()).graph;
+    }
+
+    @Override
+    public Map getMap() {
+        return map;
+    }
+
+    @Override
+    public String getName() {
+        return "SubgoalGraph";
+    }
+
+    @Override
+    public List<Cell> findPath(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos).path;
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos, SearchBudget.UNLIMITED);
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget) {
+        return query(startPos, goalPos, budget, map.getSnapshot());
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget, MapSnapshot grid) {
+        Index current = getIndex(grid);
+        SubgoalGraph graph = current.graph;
+
+        if (startPos.x == goalPos.x && startPos.y == goalPos.y) {
+            return new PathResult(new LinkedList<>(), 0, PathResult.Status.COMPLETE);
+        }
+        if (!current.components.isConnected(startPos.x, startPos.y, goalPos.x, goalPos.y)) {
+            return new PathResult(new LinkedList<>(), 0, PathResult.Status.NO_PATH);
+        }
+
+        SearchState state = current.states.acquire();
+        try {
+            return search(graph, state, startPos, goalPos, budget);
+        } finally {
+            current.states.release(state);
+        }
+    }
+
+    private static PathResult search(SubgoalGraph graph, SearchState state, Cell startPos, Cell goalPos,
+                                     SearchBudget budget) {
+        MapSnapshot grid = graph.getSnapshot();
+        int subgoalCount = graph.getSubgoalCount();
+        int startNode = subgoalCount, goalNode = subgoalCount + 1;
+
+        int[] goalEdges = graph.getDirectHReachable(goalPos.x, goalPos.y);
+        for (int subgoal : goalEdges) {
+            state.markGoalEdge(subgoal);
+        }
+
+        // The subgoals direct-h-reachable from the starting point, and whether the goal point is h-reachable from it.
+        // Goals only reachable through subgoals are found through the graph, at the same cost
+        List<Integer> startEdges = new ArrayList<>();
+        boolean[] isGoalHReachable = {false};
+        SubgoalGraph.scanHReachable(grid, startPos.x, startPos.y, (x, y) -> {
+            if (x == goalPos.x && y == goalPos.y) {
+                isGoalHReachable[0] = true;
+            }
+            int subgoal = graph.getSubgoal(x, y);
+            if (subgoal == SubgoalGraph.NO_SUBGOAL) {
+                return true;
+            }
+            startEdges.add(subgoal);
+            return false;
+        });
+
+        RadixHeap<Integer> openSet = new RadixHeap<>();
+        state.open(startNode, 0, -1);
+        openSet.add(estimate(startPos.x, startPos.y, goalPos), startNode);
+        long expansions = 0;
+
+        // Only a budgeted search keeps track of the expanded node closest to the goal
+        SearchBudget.Tracker tracker = budget.isUnlimited() ? null : budget.start();
+        int closestNode = startNode;
+        long closestDistance = estimate(startPos.x, startPos.y, goalPos);
+
+        while (!openSet.isEmpty()) {
+            int node = openSet.poll();
+            if (state.isClosed(node)) {
+                continue;
+            }
+            state.close(node);
+            expansions++;
+
+            if (node == goalNode) {
+                return new PathResult(buildPath(grid, graph, state, startPos, goalPos, startNode, goalNode),
+                        expansions, PathResult.Status.COMPLETE);
+            }
+
+            int x = node == startNode ? startPos.x : graph.getX(node);
+            int y = node == startNode ? startPos.y : graph.getY(node);
+            long gCost = state.getGCost(node);
+
+            if (tracker != null) {
+                long distance = estimate(x, y, goalPos);
+                if (distance < closestDistance) {
+                    closestNode = node;
+                    closestDistance = distance;
+                }
+
+                if (tracker.check(expansions, openSet.size()) != null) {
+                    return new PathResult(buildPath(grid, graph, state, startPos, goalPos, startNode, closestNode),
+                            expansions, PathResult.Status.BUDGET_EXCEEDED);
+                }
+            }
+
+            if (node == startNode) {
+                for (int next : startEdges) {
+                    relax(graph, state, openSet, node, x, y, gCost, next, goalPos);
+                }
+            } else {
+                for (int i = 0, degree = graph.getDegree(node); i < degree; i++) {
+                    relax(graph, state, openSet, node, x, y, gCost, graph.getEdge(node, i), goalPos);
+                }
+            }
+
+            if (node == startNode ? isGoalHReachable[0] : state.isGoalEdge(node)) {
+                long goalGCost = gCost + FixedPointOctileDistance.getFixedPointDistance(x, y, goalPos.x, goalPos.y);
+                if (state.relax(goalNode, goalGCost, node)) {
+                    openSet.add(goalGCost, goalNode);
+                }
+            }
+        }
+
+        return new PathResult(new LinkedList<>(), expansions, PathResult.Status.NO_PATH);
+    }
+
+    /**
+     * Turn the edges of the path found to the given node (the goal node, or any expanded node) into turning points
+     */
+    private static List<Cell> buildPath(MapSnapshot grid, SubgoalGraph graph, SearchState state, Cell startPos,
+                                        Cell goalPos, int startNode, int endNode) {
+        int goalNode = startNode + 1;
+        List<Cell> waypoints = new ArrayList<>();
+        for (int node = endNode; node != startNode; node = state.getParent(node)) {
+            waypoints.add(node == goalNode ? goalPos : new Cell(graph.getX(node), graph.getY(node)));
+        }
+        waypoints.add(startPos);
+
+        LinkedList<Cell> path = new LinkedList<>();
+        for (int i = waypoints.size() - 1; i > 0; i--) {
+            Cell from = waypoints.get(i), to = waypoints.get(i - 1);
+
+            for (Cell cell : SubgoalGraph.getHPath(grid, from.x, from.y, to.x, to.y)) {
+                // Drop the waypoints lying on a straight line between their neighbors
+                if (path.size() >= 1) {
+                    Cell last = path.getLast();
+                    Cell beforeLast = path.size() >= 2 ? path.get(path.size() - 2) : startPos;
+                    if (getDirection(beforeLast, last) == getDirection(last, cell)) {
+                        path.removeLast();
+                    }
+                }
+                path.add(new Cell(cell.x, cell.y));
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * @return Direction between two aligned positions, encoded as 3 * (dx + 1) + (dy + 1) with dx, dy in [-1, 1]
+     */
+    private static int getDirection(Cell from, Cell to) {
+        return 3 * (Integer.signum(to.x - from.x) + 1) + Integer.signum(to.y - from.y) + 1;
+    }
+
+    private static void relax(SubgoalGraph graph, SearchState state, RadixHeap<Integer> openSet, int node, int x,
+                              int y, long gCost, int next, Cell goalPos) {
+        long nextGCost = gCost
+                + FixedPointOctileDistance.getFixedPointDistance(x, y, graph.getX(next), graph.getY(next));
+        if (state.relax(next, nextGCost, node)) {
+            openSet.add(nextGCost + estimate(graph.getX(next), graph.getY(next), goalPos), next);
+        }
+    }
+
+    private static long estimate(int x, int y, Cell goalPos) {
+        return FixedPointOctileDistance.getFixedPointDistance(x, y, goalPos.x, goalPos.y);
+    }
+}
@@ -0,0 +1,187 @@
+package Engine;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Preprocessing.IndexSnapshot;
+import Preprocessing.ParallelPreprocessor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * WarmStartEngine: Starts an index-based engine from the {@link IndexSnapshot} file of its map, rebuilding the file
+ * in the background if it is missing or stale
+ *
+ * At construction the file is mapped (see {@link IndexSnapshot#load}): if it matches the map, the engine is ready
+ * right away. Otherwise the indexes are recomputed on the given executor and written back to the file, while the
+ * queries are answered by the fallback engine, typically a plain JumpPointSearch needing no preprocessing. Once
+ * the rebuild is over, the queries switch to the index-based engine.
+ *
+ * Later edits of the map are left to the index-based engine, which recomputes its indexes itself. The file is only
+ * read & written at startup.
+ */
+
+public class WarmStartEngine implements PathFindingEngine {
+
+    public enum State {
+        /** Indexes mapped from the file */
+        LOADED,
+        /** File missing or stale, the indexes are being rebuilt */
+        REBUILDING,
+        /** Indexes rebuilt (and written back to the file, unless that failed) */
+        REBUILT,
+        /** The rebuild failed, queries are answered by the fallback engine for good */
+        FAILED
+    }
+
+    private final Map map;
+    private final Path indexFile;
+    private final Set<IndexSnapshot.Section> sections;
+    private final Function<IndexSnapshot, PathFindingEngine> engineFactory;
+    private final PathFindingEngine fallback;
+
+    private volatile PathFindingEngine engine;
+    private volatile State state;
+    private final CountDownLatch isSettled = new CountDownLatch(1);
+
+    /**
+     * @param map
+     * @param indexFile File of the indexes of the map, created if missing
+     * @param sections Indexes the engine is made of
+     * @param engineFactory Creates the index-based engine from the indexes
+     * @param fallback Answers the queries until the indexes are rebuilt
+     * @param executor Runs the rebuild, if any
+     */
+    public WarmStartEngine(Map map, Path indexFile, Set<IndexSnapshot.Section> sections,
+                           Function<IndexSnapshot, PathFindingEngine> engineFactory, PathFindingEngine fallback,
+                           Executor executor) {
+        this.map = map;
+        this.indexFile = indexFile;
+        this.sections = sections;
+        this.engineFactory = engineFactory;
+        this.fallback = fallback;
+
+        MapSnapshot grid = map.getSnapshot();
+        IndexSnapshot indexes = null;
+        try {
+            indexes = IndexSnapshot.load(indexFile, grid, sections);
+        } catch (IOException e) {
+            System.err.println("Ignoring index file " + indexFile + ": " + e.getMessage());
+        }
+
+        if (indexes != null) {
+            engine = engineFactory.apply(indexes);
+            state = State.LOADED;
+            isSettled.countDown();
+        } else {
+            state = State.REBUILDING;
+            executor.execute(() -> rebuild(grid));
+        }
+    }
+
+    private void rebuild(MapSnapshot grid) {
+        try {
+            IndexSnapshot indexes =
+                    IndexSnapshot.compute(grid, new ParallelPreprocessor(ForkJoinPool.commonPool()), sections);
+            try {
+                indexes.write(indexFile);
+            } catch (IOException e) {
+                // The indexes are still good for this process
+                System.err.println("Cannot write index file " + indexFile + ": " + e);
+            }
+
+            engine = engineFactory.apply(indexes);
+            state = State.REBUILT;
+        } catch (RuntimeException e) {
+            System.err.println("Cannot rebuild the indexes of " + indexFile + ", staying on " + fallback.getName()
+                    + ": " + e);
+            state = State.FAILED;
+        } catch (Error e) {
+            // E.g. OutOfMemoryError on a large map: settle the state before letting the executor see the error
+            System.err.println("Cannot rebuild the indexes of " + indexFile + ", staying on " + fallback.getName()
+                    + ": " + e);
+            state = State.FAILED;
+            throw e;
+        } finally {
+            isSettled.countDown();
+        }
+    }
+
+    /**
+     * @return The engine answering the queries at the moment
+     */
+    private PathFindingEngine current() {
+        PathFindingEngine current = engine;
+        return current != null ? current : fallback;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public Path getIndexFile() {
+        return indexFile;
+    }
+
+    /**
+     * Wait until the index-based engine is ready, or the rebuild has failed
+     * @param timeout
+     * @param unit
+     * @return true if the index-based engine answers the queries
+     * @throws InterruptedException
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        isSettled.await(timeout, unit);
+        return engine != null;
+    }
+
+    /** ---------- Queries ---------- */
+
+    @Override
+    public List<Cell> findPath(Cell startPos, Cell goalPos) {
+        return current().findPath(startPos, goalPos);
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos) {
+        return current().query(startPos, goalPos);
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget) {
+        return current().query(startPos, goalPos, budget);
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget, MapSnapshot grid) {
+        return current().query(startPos, goalPos, budget, grid);
+    }
+
+    @Override
+    public List<List<Cell>> findPathsToNearest(Cell startPos, Collection<Cell> targets, int targetCount) {
+        return current().findPathsToNearest(startPos, targets, targetCount);
+    }
+
+    @Override
+    public Map getMap() {
+        return map;
+    }
+
+    /**
+     * @return Name of the engine answering the queries at the moment
+     */
+    @Override
+    public String getName() {
+        PathFindingEngine current = engine;
+        return current != null ? current.getName() : fallback.getName() + " (indexes rebuilding)";
+    }
+}
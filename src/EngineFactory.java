@@ -0,0 +1,92 @@
+import CostStrategy.AStarStrategy;
+import DataStructures.Map;
+import Engine.PathFindingEngine;
+import Engine.RectangleSymmetryEngine;
+import Engine.SubgoalGraphEngine;
+import Engine.WarmStartEngine;
+import HeuristicStrategy.EuclideanDistance;
+import HeuristicStrategy.OctileDistance;
+
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * EngineFactory: Creates the path-finding engine of a map from its name, so that launchers can choose the engine
+ * per map
+ *
+ * Engines:
+ *   jps                          JumpPointSearch (A*, octile heuristic)
+ *   jps-fixed-point              JumpPointSearch in integer-cost mode
+ *   jps-fixed-point-tie-break    Same, breaking ties on h
+ *   jps-parallel                 JumpPointSearch scanning the directions of a node in parallel (huge open maps)
+ *   jps-plus                     JumpPointSearch reading precomputed jump distances (JPS+, static maps)
+ *   subgoal                      SubgoalGraphEngine, precomputes the subgoal graph of the map (static maps)
+ *   rsr                          RectangleSymmetryEngine, precomputes the empty rectangles of the map (open maps)
+ *
+ * The index-based engines (jps-plus, subgoal, rsr) may be started from an index file instead, see
+ * {@link #createWarmStart}.
+ */
+
+public class EngineFactory {
+    public static final String DEFAULT_ENGINE = "jps";
+
+    public static PathFindingEngine create(String engineName, Map map) {
+        switch (engineName) {
+            case "jps":
+                return newJumpPointSearch(map);
+            case "jps-fixed-point":
+                return newJumpPointSearch(map).initFixedPointCosts(false);
+            case "jps-fixed-point-tie-break":
+                return newJumpPointSearch(map).initFixedPointCosts(true);
+            case "jps-parallel":
+                return newJumpPointSearch(map).initParallelJumps(ForkJoinPool.commonPool());
+            case "jps-plus":
+                return newJumpPointSearch(map).initJumpDistances(null);
+            case "subgoal":
+                return new SubgoalGraphEngine(map);
+            case "rsr":
+                return new RectangleSymmetryEngine(map);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engineName);
+        }
+    }
+
+    /**
+     * Same as {@link #create}, the index-based engines starting from the given index file (see
+     * {@link WarmStartEngine}): a stale or missing file is rebuilt on a background thread, the queries being answered
+     * by plain JPS meanwhile
+     * @param engineName
+     * @param map
+     * @param indexFile
+     * @return
+     */
+    public static PathFindingEngine createWarmStart(String engineName, Map map, Path indexFile) {
+        switch (engineName) {
+            case "jps-plus":
+                return new WarmStartEngine(map, indexFile, JumpPointSearch.JUMP_DISTANCE_SECTIONS,
+                        indexes -> newJumpPointSearch(map).initJumpDistances(indexes.getJumpDistances()),
+                        newJumpPointSearch(map), EngineFactory::startIndexRebuild);
+            case "subgoal":
+                return new WarmStartEngine(map, indexFile, SubgoalGraphEngine.SECTIONS,
+                        indexes -> new SubgoalGraphEngine(map, indexes), newJumpPointSearch(map),
+                        EngineFactory::startIndexRebuild);
+            case "rsr":
+                return new WarmStartEngine(map, indexFile, RectangleSymmetryEngine.SECTIONS,
+                        indexes -> new RectangleSymmetryEngine(map, indexes), newJumpPointSearch(map),
+                        EngineFactory::startIndexRebuild);
+            default:
+                // No indexes to start from
+                return create(engineName, map);
+        }
+    }
+
+    private static void startIndexRebuild(Runnable rebuild) {
+        Thread thread = new Thread(rebuild, "index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static JumpPointSearch newJumpPointSearch(Map map) {
+        return JumpPointSearch.newPathFinding(map, new AStarStrategy(), new EuclideanDistance(), new OctileDistance());
+    }
+}
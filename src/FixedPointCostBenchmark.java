@@ -0,0 +1,160 @@
+import CostStrategy.AStarStrategy;
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Engine.GridDistances;
+import Engine.PathFindingEngine;
+import HeuristicStrategy.EuclideanDistance;
+import HeuristicStrategy.FixedPointOctileDistance;
+import HeuristicStrategy.OctileDistance;
+import Preprocessing.PreprocessingBenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * FixedPointCostBenchmark: Compares the floating-point search (binary heap) with the integer-cost search (radix
+ * heap, with & without tie-break on h) on the same random queries, and checks that the path costs are the exact
+ * minimum ones (grid Dijkstra) within the tolerance documented in {@link FixedPointOctileDistance}
+ *
+ * Usage:
+ *   java FixedPointCostBenchmark [--map <map file> | --size 1024 --density 0.2] [--queries 200] [--rounds 3]
+ *        [--seed 1]
+ */
+
+public class FixedPointCostBenchmark {
+    /** Upper bound of the undervaluation of a diagonal step, in cells */
+    private static final double DIAGONAL_ROUNDING_ERROR = 1.4e-5;
+
+    public static void main(String[] args) {
+        String mapFile = null;
+        int size = 1024, queryCount = 200, rounds = 3;
+        double density = 0.2;
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--map": mapFile = args[++i]; break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--density": density = Double.parseDouble(args[++i]); break;
+                case "--queries": queryCount = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Map map;
+        if (mapFile != null) {
+            map = Map.initMap(mapFile);
+        } else {
+            MapSnapshot generated = PreprocessingBenchmark.generateMap(size, size, density, seed);
+            map = Map.initMap(size, size);
+            map.edit(snapshot -> generated);
+        }
+        System.out.println("Map: " + map.getWidth() + " x " + map.getHeight() + " cells, " + queryCount + " queries");
+
+        // Random pairs of walkable positions
+        Random random = new Random(seed);
+        List<Cell[]> queries = new ArrayList<>();
+        while (queries.size() < queryCount) {
+            Cell startPos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            Cell goalPos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            if (map.isPositionWalkable(startPos.x, startPos.y) && map.isPositionWalkable(goalPos.x, goalPos.y)) {
+                queries.add(new Cell[] {startPos, goalPos});
+            }
+        }
+
+        JumpPointSearch floatingPoint = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance());
+        JumpPointSearch fixedPoint = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance())
+                .initFixedPointCosts(false);
+        JumpPointSearch fixedPointTieBreak = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance())
+                .initFixedPointCosts(true);
+
+        // Exact minimum costs (infinite if unreachable), along with the diagonal steps of an exact optimal path
+        List<Double> reference = new ArrayList<>();
+        List<Long> referenceDiagonalSteps = new ArrayList<>();
+        for (Cell[] query : queries) {
+            GridDistances distances = new GridDistances(map.getSnapshot(), query[0], query[1]);
+            reference.add(distances.getDistance(query[1].x, query[1].y));
+            referenceDiagonalSteps.add((long) distances.getDiagonalSteps(query[1].x, query[1].y));
+        }
+
+        double baseline = run("PriorityQueue<Double>", floatingPoint, queries, rounds, reference,
+                referenceDiagonalSteps, 0);
+        run("RadixHeap", fixedPoint, queries, rounds, reference, referenceDiagonalSteps, baseline);
+        run("RadixHeap + h tie-break", fixedPointTieBreak, queries, rounds, reference, referenceDiagonalSteps,
+                baseline);
+    }
+
+    /**
+     * Time the given engine on all queries (best of the given number of rounds), and compare its path costs with
+     * the exact ones
+     * @param reference Exact costs
+     * @param referenceDiagonalSteps Diagonal steps of exact optimal paths
+     * @param baseline Time of the floating-point search, 0 for the floating-point search itself
+     * @return Best time, in milliseconds
+     */
+    private static double run(String name, PathFindingEngine engine, List<Cell[]> queries, int rounds,
+                              List<Double> reference, List<Long> referenceDiagonalSteps, double baseline) {
+        List<List<Cell>> paths = new ArrayList<>();
+        long best = Long.MAX_VALUE;
+
+        for (int round = 0; round < rounds; round++) {
+            paths.clear();
+            long begin = System.nanoTime();
+            for (Cell[] query : queries) {
+                paths.add(engine.findPath(query[0], query[1]));
+            }
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+
+        double maxDeviation = 0;
+        int outOfTolerance = 0;
+
+        for (int i = 0; i < paths.size(); i++) {
+            Cell startPos = queries.get(i)[0];
+            List<Cell> path = paths.get(i);
+            if (path.isEmpty()) {
+                // Right only if the goal is unreachable, or is the starting point
+                outOfTolerance += reference.get(i) == Double.POSITIVE_INFINITY || reference.get(i) == 0 ? 0 : 1;
+                continue;
+            }
+
+            double deviation = PathFindingEngine.getPathCost(startPos, path) - reference.get(i);
+            maxDeviation = Math.max(maxDeviation, Math.abs(deviation));
+            // Only the fixed-point costs may pick a longer path, by rounding down the diagonal steps: the bound of
+            // FixedPointOctileDistance, (d1 + d2) * 1.4e-5 with d1 & d2 the diagonal steps of both paths
+            double tolerance = DIAGONAL_ROUNDING_ERROR *
+                    (getDiagonalSteps(startPos, path) + referenceDiagonalSteps.get(i));
+            if (Math.abs(deviation) > tolerance + 1e-9) {
+                outOfTolerance++;
+            }
+        }
+
+        double millis = best / 1e6;
+        StringBuilder report = new StringBuilder(String.format("%-24s time: %8.1f ms", name, millis));
+        if (baseline > 0) {
+            report.append(String.format(", speedup: %5.2f", baseline / millis));
+        }
+        report.append(String.format(", max cost deviation: %.2e, out of tolerance: %d", maxDeviation,
+                outOfTolerance));
+
+        System.out.println(report);
+        return millis;
+    }
+
+    private static long getDiagonalSteps(Cell startPos, List<Cell> path) {
+        long steps = 0;
+        Cell prev = startPos;
+        for (Cell pathCell : path) {
+            steps += Math.min(Math.abs(pathCell.x - prev.x), Math.abs(pathCell.y - prev.y));
+            prev = pathCell;
+        }
+        return steps;
+    }
+}
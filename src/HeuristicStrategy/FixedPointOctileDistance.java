@@ -0,0 +1,61 @@
+package HeuristicStrategy;
+
+import DataStructures.Cell;
+
+/**
+ * FixedPointOctileDistance: Octile distance in integer units, for the integer-cost search mode
+ *
+ * A straight step costs STRAIGHT_COST units and a diagonal step DIAGONAL_COST units, i.e. sqrt(2) rounded down to
+ * 5 significant digits. Every diagonal step is thus undervalued by less than 1.4e-5 (in cells), and the cost of a
+ * path with d diagonal steps is at most d * 1.4e-5 below its exact octile cost. Two paths whose exact costs differ
+ * by less than that may come out in either order, so the path found in integer-cost mode is optimal within
+ *   (d1 + d2) * 1.4e-5
+ * where d1 and d2 are the diagonal step counts of the integer-cost path and of an exact optimal one.
+ *
+ * As a DistanceAlgorithm, it returns the fixed-point distance converted back to cells, which is never below the
+ * Chebyshev distance.
+ */
+
+public class FixedPointOctileDistance implements DistanceAlgorithm {
+    /** Units per cell */
+    public static final long STRAIGHT_COST = 10000;
+    public static final long DIAGONAL_COST = 14142;
+
+    @Override
+    public double getDistance(Cell from, Cell to) {
+        return toCells(getFixedPointDistance(from, to));
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return Octile distance between the given positions, in units
+     */
+    public static long getFixedPointDistance(Cell from, Cell to) {
+        return getFixedPointDistance(from.x, from.y, to.x, to.y);
+    }
+
+    /**
+     * @param fromX
+     * @param fromY
+     * @param toX
+     * @param toY
+     * @return Octile distance between the given positions, in units
+     */
+    public static long getFixedPointDistance(int fromX, int fromY, int toX, int toY) {
+        long dx = Math.abs(fromX - toX);
+        long dy = Math.abs(fromY - toY);
+        return STRAIGHT_COST * Math.abs(dx - dy) + DIAGONAL_COST * Math.min(dx, dy);
+    }
+
+    public static double toCells(long units) {
+        return (double) units / STRAIGHT_COST;
+    }
+
+    /**
+     * Convert a distance in cells to units, rounding to the nearest unit
+     */
+    public static long toUnits(double cells) {
+        return Math.round(cells * STRAIGHT_COST);
+    }
+}
@@ -3,17 +3,35 @@ import CostStrategy.CostStrategy;
 import DataStructures.Cell;
 import DataStructures.Direction;
 import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import DataStructures.RadixHeap;
+import DataStructures.TargetSet;
+import Engine.PathFindingEngine;
+import Engine.PathResult;
+import Engine.SearchBudget;
 import HeuristicStrategy.DistanceAlgorithm;
 import HeuristicStrategy.EuclideanDistance;
+import HeuristicStrategy.FixedPointOctileDistance;
 import HeuristicStrategy.OctileDistance;
+import Preprocessing.IndexSnapshot;
+import Preprocessing.JumpDistanceIndex;
+import Preprocessing.ParallelPreprocessor;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * JumpPointSearch.JumpPointSearch: A Java version implementation of the Jump-Point-Search algorithm (JPS)
@@ -27,28 +45,69 @@ import java.util.Set;
  *
  * For details of the algorithm itself, see:
  *   http://users.cecs.anu.edu.au/~dharabor/data/papers/harabor-grastien-aaai11.pdf
+ *
+ * Integer-cost mode (see {@link #initFixedPointCosts}):
+ *   g & h are measured in the fixed-point units of {@link FixedPointOctileDistance} rather than by the distance
+ *   algorithm & heuristic strategy, and the open list is a {@link RadixHeap} over the fixed-point scores instead of
+ *   a binary heap over doubles. Path costs match the floating-point mode within the tolerance documented in
+ *   FixedPointOctileDistance. The radix heap being monotone, the cost strategy must not let scores decrease along
+ *   a path (true for A* & Dijkstra, not for the greedy strategy, which then only finds some path)
+ *
+ * Parallel jumps (see {@link #initParallelJumps}):
+ *   The scans of the directions of an expanded node run as tasks of a fork-join pool instead of one after the
+ *   other. Scans only read the pinned snapshot, and their jump points are merged on the searching thread in the
+ *   order of the directions, so the open list, closed set & paths are exactly those of the sequential search. It
+ *   pays off when scans are long (large open maps), not when the fork-join overhead exceeds them (mazes), see
+ *   ParallelJumpBenchmark
+ *
+ * Precomputed jumps (JPS+, see {@link #initJumpDistances}):
+ *   Jumps read the goal-independent distances of a {@link JumpDistanceIndex} instead of scanning the map, then
+ *   check whether the goal point lies within the distance they cover, so they return the very jump points of the
+ *   scans. The index is recomputed by the first query seeing a new version of the map. One-to-many queries
+ *   still scan, their targets being too many to check
  */
 
-public class JumpPointSearch {
+public class JumpPointSearch implements PathFindingEngine {
 
     private static JumpPointSearch jps;
 
+    /** Returned by {@link #jump} if no jump point lies on the given direction */
+    private static final long NO_JUMP_POINT = -1L;
+    private static final DistanceAlgorithm FIXED_POINT_OCTILE = new FixedPointOctileDistance();
+
+    /** Indexes read by the precomputed jumps, e.g. for loading them from an index file */
+    public static final Set<IndexSnapshot.Section> JUMP_DISTANCE_SECTIONS =
+            Collections.unmodifiableSet(EnumSet.of(IndexSnapshot.Section.JUMP_DISTANCES));
+
     /** Properties of the map */
     private Map map;
     private Cell start, goal;
     private CostStrategy costStrategy;
     private DistanceAlgorithm heuristicStrategy;
     private DistanceAlgorithm distanceAlgorithm;
-
-    PriorityQueue<Cell> openSet = new PriorityQueue<>(Comparator.comparingDouble(c -> costStrategy.getScore(c)));
+    private boolean useFixedPointCosts = false;
+    private boolean tieBreakOnHeuristic = false;
+    private ForkJoinPool jumpPool;      // Runs the scans of the directions of a node, if not null
+    private boolean usePrecomputedJumps = false;
+    private volatile JumpDistanceIndex jumpDistances;   // Of the pinned snapshot in a query, null to scan
+
+    /** Properties of the running query */
+    private TargetSet targets;          // Goals of a one-to-many query, in which case goal is null
+    private MapSnapshot grid;
+    private java.util.Map<Integer, Cell> nodes = new HashMap<>();
+    private long expansions = 0;
+    private SearchBudget budget = SearchBudget.UNLIMITED;
+    private List<Cell> partialPath;     // Path to the expanded node closest to the goal, if the budget was exceeded
+
+    private OpenList openSet;
     Set<Cell> closedSet = new HashSet<>();
 
     private JumpPointSearch() {}
 
     public JumpPointSearch initMap(Map map) {
         this.map = map;
-        openSet.clear();
         closedSet.clear();
+        nodes.clear();
         return this;
     }
 
@@ -80,6 +139,39 @@ public class JumpPointSearch {
         return this;
     }
 
+    /**
+     * Switch to the integer-cost search mode (see the description of the class)
+     * @param tieBreakOnHeuristic Among nodes of equal score, expand the ones closest to the goal first
+     * @return
+     */
+    public JumpPointSearch initFixedPointCosts(boolean tieBreakOnHeuristic) {
+        this.useFixedPointCosts = true;
+        this.tieBreakOnHeuristic = tieBreakOnHeuristic;
+        return this;
+    }
+
+    /**
+     * Scan the directions of every expanded node in parallel (see the description of the class)
+     * @param jumpPool Pool running the scans, e.g. ForkJoinPool.commonPool()
+     * @return
+     */
+    public JumpPointSearch initParallelJumps(ForkJoinPool jumpPool) {
+        this.jumpPool = jumpPool;
+        return this;
+    }
+
+    /**
+     * Read the jumps from precomputed distances rather than scanning the map (see the description of the class)
+     * @param jumpDistances Index of the current version of the map (e.g. loaded from an index file), or null to
+     *                      compute it on the first query
+     * @return
+     */
+    public JumpPointSearch initJumpDistances(JumpDistanceIndex jumpDistances) {
+        this.usePrecomputedJumps = true;
+        this.jumpDistances = jumpDistances;
+        return this;
+    }
+
     public static JumpPointSearch initPathFinding(Map map, Cell startPos, Cell goalPos, CostStrategy costStrategy,
                                                   DistanceAlgorithm distanceAlgorithm, DistanceAlgorithm heuristicStrategy) {
         if (jps != null) {
@@ -95,6 +187,195 @@ public class JumpPointSearch {
         return jps;
     }
 
+    /**
+     * Create a standalone path-finding instance bound to the given map. Unlike {@link #initPathFinding}, each call
+     * returns a new instance, so several maps can be served side by side
+     * @param map
+     * @param costStrategy
+     * @param distanceAlgorithm
+     * @param heuristicStrategy
+     * @return
+     */
+    public static JumpPointSearch newPathFinding(Map map, CostStrategy costStrategy,
+                                                 DistanceAlgorithm distanceAlgorithm, DistanceAlgorithm heuristicStrategy) {
+        return new JumpPointSearch()
+                .initMap(map)
+                .initCostStrategy(costStrategy)
+                .initDistanceAlgorithm(distanceAlgorithm)
+                .initHeuristicStrategy(heuristicStrategy);
+    }
+
+    @Override
+    public Map getMap() {
+        return map;
+    }
+
+    @Override
+    public String getName() {
+        return "JPS(" + costStrategy.getClass().getSimpleName() + ", " + distanceAlgorithm.getClass().getSimpleName()
+                + ", " + heuristicStrategy.getClass().getSimpleName()
+                + (useFixedPointCosts ? (tieBreakOnHeuristic ? ", fixed-point, h tie-break" : ", fixed-point") : "")
+                + (jumpPool != null ? ", parallel jumps" : "") + (usePrecomputedJumps ? ", JPS+" : "") + ")";
+    }
+
+    /**
+     * Finding the minimum-cost path between the given positions
+     *
+     * Note: Every call runs on its own copy of the search state and pins the current snapshot of the map, so
+     *       this method can be called concurrently, also while the map is being edited
+     *
+     * @param startPos
+     * @param goalPos
+     * @return
+     */
+    @Override
+    public List<Cell> findPath(Cell startPos, Cell goalPos) {
+        return newQuery()
+                .initStartPoint(new Cell(startPos.x, startPos.y))
+                .initGoalPoint(new Cell(goalPos.x, goalPos.y))
+                .findPath();
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Finding the minimum-cost path between the given positions, stopping once the given budget is exceeded
+     * @param startPos
+     * @param goalPos
+     * @param budget
+     * @return The path, or the partial path to the expanded jump point closest to the goal point (by the
+     *         heuristic) if the budget was exceeded
+     */
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget) {
+        return query(startPos, goalPos, budget, map.getSnapshot());
+    }
+
+    /**
+     * Same as {@link #query(Cell, Cell, SearchBudget)}, on the given snapshot of the map. The precomputed jumps
+     * are only read if they belong to that snapshot, otherwise the query scans
+     * @param startPos
+     * @param goalPos
+     * @param budget
+     * @param grid
+     * @return
+     */
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget, MapSnapshot grid) {
+        JumpPointSearch query = newQuery()
+                .initStartPoint(new Cell(startPos.x, startPos.y))
+                .initGoalPoint(new Cell(goalPos.x, goalPos.y));
+        query.budget = budget;
+        query.grid = grid;
+        List<Cell> path = query.findPath();
+
+        if (query.partialPath != null) {
+            return new PathResult(query.partialPath, query.expansions, PathResult.Status.BUDGET_EXCEEDED);
+        }
+        return new PathResult(path, query.expansions, PathResult.getStatus(startPos, goalPos, path));
+    }
+
+    /**
+     * Finding the minimum-cost paths from the starting point to the nearest of the given targets, in a single
+     * search that stops as soon as enough targets are reached. The heuristic is the distance to the nearest
+     * target, hence the search costs about the same as a query to that target alone
+     *
+     * @param startPos
+     * @param targets
+     * @param targetCount Number of targets to reach
+     * @return
+     */
+    @Override
+    public List<List<Cell>> findPathsToNearest(Cell startPos, Collection<Cell> targets, int targetCount) {
+        if (targetCount < 0) {
+            throw new IllegalArgumentException("Negative number of targets: " + targetCount);
+        }
+
+        JumpPointSearch query = newQuery()
+                .initStartPoint(new Cell(startPos.x, startPos.y));
+        query.targets = new TargetSet(targets);
+
+        return query.targets.isEmpty() || targetCount == 0 ? new ArrayList<>() : query.search(targetCount);
+    }
+
+    /**
+     * Create a new instance with the same settings, to run a single query on
+     * @return
+     */
+    private JumpPointSearch newQuery() {
+        JumpPointSearch query = newPathFinding(map, costStrategy, distanceAlgorithm, heuristicStrategy);
+        query.useFixedPointCosts = useFixedPointCosts;
+        query.tieBreakOnHeuristic = tieBreakOnHeuristic;
+        query.jumpPool = jumpPool;
+        query.jumpDistances = usePrecomputedJumps ? getJumpDistances() : null;
+        return query;
+    }
+
+    /**
+     * Obtain the jump distances of the current version of the map, recomputing them if the map has been edited
+     */
+    private JumpDistanceIndex getJumpDistances() {
+        MapSnapshot current = map.getSnapshot();
+        JumpDistanceIndex index = jumpDistances;
+
+        if (index == null || index.getSnapshot() != current) {
+            synchronized (this) {
+                index = jumpDistances;
+                if (index == null || index.getSnapshot() != current) {
+                    index = JumpDistanceIndex.compute(current, new ParallelPreprocessor(ForkJoinPool.commonPool()));
+                    jumpDistances = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Obtain the Cell holding the search state of given position in the running query. The starting point and
+     * the goal point are the very instances given to the query
+     * @param x
+     * @param y
+     * @return
+     */
+    private Cell getNode(int x, int y) {
+        if (grid.isOutsideMap(x, y)) {
+            return null;
+        }
+        return nodes.computeIfAbsent(y * grid.getWidth() + x, idx -> new Cell(x, y));
+    }
+
+    /**
+     * Check if the given position is the goal point, or one of the targets of a one-to-many query
+     * @param x
+     * @param y
+     * @return
+     */
+    private boolean isGoal(int x, int y) {
+        return goal != null ? x == goal.x && y == goal.y : targets.contains(x, y);
+    }
+
+    /**
+     * Obtain the estimated distance from the given position to the goal point, or to the nearest target
+     * @param pos
+     * @return
+     */
+    private double estimateDistanceToGoal(Cell pos) {
+        return goal != null ? heuristicStrategy.getDistance(pos, goal) : targets.getMinDistance(pos, heuristicStrategy);
+    }
+
+    /**
+     * Fixed-point counterpart of {@link #estimateDistanceToGoal}
+     * @param pos
+     * @return
+     */
+    private long estimateFixedPointDistanceToGoal(Cell pos) {
+        return goal != null
+                ? FixedPointOctileDistance.getFixedPointDistance(pos, goal)
+                : FixedPointOctileDistance.toUnits(targets.getMinDistance(pos, FIXED_POINT_OCTILE));
+    }
 
     /**
      * Find forced neighbors of given position
@@ -104,33 +385,28 @@ public class JumpPointSearch {
      */
     private List<Cell> getForcedNeighbors(Cell pos, Direction direction) {
         List<Cell> forcedNeighbors = new ArrayList<>();
+        int forcedNeighborMask = grid.getForcedNeighborMask(pos.x, pos.y, direction);
 
         if (direction.yOffset == 0) {                                                           // Move horizontally
-            if (map.reachable(pos.x, pos.y, pos.x + direction.xOffset, pos.y - 1) &&
-                    map.isObstacleAt(pos.x, pos.y - 1)) {
-                forcedNeighbors.add(map.getCellAt(pos.x + direction.xOffset, pos.y - 1));
+            if ((forcedNeighborMask & 1) != 0) {
+                forcedNeighbors.add(getNode(pos.x + direction.xOffset, pos.y - 1));
             }
-            if (map.reachable(pos.x, pos.y, pos.x + direction.xOffset, pos.y + 1) &&
-                    map.isObstacleAt(pos.x, pos.y + 1)) {
-                forcedNeighbors.add(map.getCellAt(pos.x + direction.xOffset, pos.y + 1));
+            if ((forcedNeighborMask & 2) != 0) {
+                forcedNeighbors.add(getNode(pos.x + direction.xOffset, pos.y + 1));
             }
         } else if (direction.xOffset == 0) {                                                    // Move vertically
-            if (map.reachable(pos.x, pos.y, pos.x - 1, pos.y + direction.yOffset) &&
-                    map.isObstacleAt(pos.x - 1, pos.y)) {
-                forcedNeighbors.add(map.getCellAt(pos.x - 1, pos.y + direction.yOffset));
+            if ((forcedNeighborMask & 1) != 0) {
+                forcedNeighbors.add(getNode(pos.x - 1, pos.y + direction.yOffset));
             }
-            if (map.reachable(pos.x, pos.y, pos.x + 1, pos.y + direction.yOffset) &&
-                    map.isObstacleAt(pos.x + 1, pos.y)) {
-                forcedNeighbors.add(map.getCellAt(pos.x + 1, pos.y + direction.yOffset));
+            if ((forcedNeighborMask & 2) != 0) {
+                forcedNeighbors.add(getNode(pos.x + 1, pos.y + direction.yOffset));
             }
         } else {                                                                                // Move diagonally
-            if (map.reachable(pos.x, pos.y, pos.x - direction.xOffset, pos.y + direction.yOffset) &&
-                    map.isObstacleAt(pos.x - direction.xOffset, pos.y)) {
-                forcedNeighbors.add(map.getCellAt(pos.x - direction.xOffset, pos.y + direction.yOffset));
+            if ((forcedNeighborMask & 1) != 0) {
+                forcedNeighbors.add(getNode(pos.x - direction.xOffset, pos.y + direction.yOffset));
             }
-            if (map.reachable(pos.x, pos.y, pos.x + direction.xOffset, pos.y - direction.yOffset) &&
-                    map.isObstacleAt(pos.x, pos.y - direction.yOffset)) {
-                forcedNeighbors.add(map.getCellAt(pos.x + direction.xOffset, pos.y - direction.yOffset));
+            if ((forcedNeighborMask & 2) != 0) {
+                forcedNeighbors.add(getNode(pos.x + direction.xOffset, pos.y - direction.yOffset));
             }
         }
 
@@ -151,7 +427,12 @@ public class JumpPointSearch {
             Direction[] directions = Direction.values();
 
             for (Direction direction : directions) {
-                neighbors.add(map.getCellAt(pos.x + direction.xOffset, pos.y + direction.yOffset));
+                Cell neighbor = getNode(pos.x + direction.xOffset, pos.y + direction.yOffset);
+
+                // Skip positions beyond the boundaries of the map
+                if (neighbor != null) {
+                    neighbors.add(neighbor);
+                }
             }
         }
         else {
@@ -164,25 +445,25 @@ public class JumpPointSearch {
 
             // If previous movement is either horizontal or vertical
             if (!Direction.isDiagonal(directionXOffset, directionYOffset)) {
-                if (map.reachable(pos.x, pos.y, pos.x + directionXOffset, pos.y + directionYOffset)) {
-                    neighbors.add(map.getCellAt(pos.x + directionXOffset, pos.y + directionYOffset));
+                if (grid.reachable(pos.x, pos.y, pos.x + directionXOffset, pos.y + directionYOffset)) {
+                    neighbors.add(getNode(pos.x + directionXOffset, pos.y + directionYOffset));
                 }
             }
             // If previous movement is diagonal
             else {
-                if (map.reachable(pos.x, pos.y, pos.x + directionXOffset, pos.y)) {
+                if (grid.reachable(pos.x, pos.y, pos.x + directionXOffset, pos.y)) {
                     // Move horizontally
-                    neighbors.add(map.getCellAt(pos.x + directionXOffset, pos.y));
+                    neighbors.add(getNode(pos.x + directionXOffset, pos.y));
                 }
 
-                if (map.reachable(pos.x, pos.y, pos.x, pos.y + directionYOffset)) {
+                if (grid.reachable(pos.x, pos.y, pos.x, pos.y + directionYOffset)) {
                     // Move vertically
-                    neighbors.add(map.getCellAt(pos.x, pos.y + directionYOffset));
+                    neighbors.add(getNode(pos.x, pos.y + directionYOffset));
                 }
 
                 // Move diagonally
-                if (map.reachable(pos.x, pos.y, pos.x + directionXOffset, pos.y + directionYOffset)) {
-                    neighbors.add(map.getCellAt(pos.x + directionXOffset, pos.y + directionYOffset));
+                if (grid.reachable(pos.x, pos.y, pos.x + directionXOffset, pos.y + directionYOffset)) {
+                    neighbors.add(getNode(pos.x + directionXOffset, pos.y + directionYOffset));
                 }
             }
 
@@ -204,41 +485,110 @@ public class JumpPointSearch {
      * @return
      */
     private Cell getNextJumpPoint(Cell curr, Direction direction) {
-        int neighborCoordX = curr.x + direction.xOffset;
-        int neighborCoordY = curr.y + direction.yOffset;
+        long jumpPoint = jump(curr.x, curr.y, direction);
 
-        Cell neighbor = map.getCellAt(neighborCoordX, neighborCoordY);
+        return jumpPoint == NO_JUMP_POINT ? null : getNode((int) (jumpPoint >> 32), (int) jumpPoint);
+    }
 
-        if (!map.isPositionWalkable(neighborCoordX, neighborCoordY) ||
-                !map.reachable(curr.x, curr.y, neighbor.x, neighbor.y)) {
-            return null;
+    /**
+     * Scan from given position along the given direction until the next jump point. Walks the map step by step
+     * rather than recursively, so that long empty stretches of large maps do not overflow the stack
+     * @param x
+     * @param y
+     * @param direction
+     * @return Coordinate of the jump point, packed as (x << 32 | y), or NO_JUMP_POINT
+     */
+    private long jump(int x, int y, Direction direction) {
+        if (jumpDistances != null) {
+            return jumpWithDistances(x, y, direction);
         }
 
-        if (neighbor.equals(goal)) {
-            return goal;
-        }
+        boolean isDiagonal = Direction.isDiagonal(direction.xOffset, direction.yOffset);
 
-        if(getForcedNeighbors(neighbor, direction).size() > 0) {
-            return neighbor;
-        }
+        while (true) {
+            int neighborCoordX = x + direction.xOffset;
+            int neighborCoordY = y + direction.yOffset;
 
-        // Next moves of diagonal direction include horizontal, vertical and diagonal moves
-        // Here we perform checking on horizontal and vertical movements first
-        if (Direction.isDiagonal(direction.xOffset, direction.yOffset)) {
+            if (!grid.reachable(x, y, neighborCoordX, neighborCoordY)) {
+                return NO_JUMP_POINT;
+            }
 
-            // Check on sub-direction X
-            if (getNextJumpPoint(neighbor, direction.getXSubDirection()) != null) {
+            long neighbor = ((long) neighborCoordX << 32) | neighborCoordY;
+
+            if (isGoal(neighborCoordX, neighborCoordY)) {
                 return neighbor;
             }
 
-            // Check on sub-direction Y
-            if (getNextJumpPoint(neighbor, direction.getYSubDirection()) != null) {
+            if (grid.getForcedNeighborMask(neighborCoordX, neighborCoordY, direction) != 0) {
                 return neighbor;
             }
+
+            // Next moves of diagonal direction include horizontal, vertical and diagonal moves
+            // Here we perform checking on horizontal and vertical movements first
+            if (isDiagonal) {
+                if (jump(neighborCoordX, neighborCoordY, direction.getXSubDirection()) != NO_JUMP_POINT ||
+                        jump(neighborCoordX, neighborCoordY, direction.getYSubDirection()) != NO_JUMP_POINT) {
+                    return neighbor;
+                }
+            }
+
+            // Carry on finding the next jump point
+            x = neighborCoordX;
+            y = neighborCoordY;
         }
+    }
 
-        // Recursively find next jump point
-        return getNextJumpPoint(neighbor, direction);
+    /**
+     * Same as {@link #jump}, reading the precomputed distances of a query to a single goal point
+     * @param x
+     * @param y
+     * @param direction
+     * @return
+     */
+    private long jumpWithDistances(int x, int y, Direction direction) {
+        int distance = jumpDistances.getDistance(x, y, direction);
+        int goalSteps = getStepsToGoal(x, y, direction, Math.abs(distance));
+
+        if (goalSteps > 0) {
+            return ((long) (x + goalSteps * direction.xOffset) << 32) | (y + goalSteps * direction.yOffset);
+        }
+        return distance > 0
+                ? ((long) (x + distance * direction.xOffset) << 32) | (y + distance * direction.yOffset)
+                : NO_JUMP_POINT;
+    }
+
+    /**
+     * Find where a scan from the given position would stop because of the goal point: on the goal point itself,
+     * or (diagonal moves) on the cell from which a straight scan reaches it
+     * @param x
+     * @param y
+     * @param direction
+     * @param reach Number of steps the scan covers, up to its jump point or to the blocked cell
+     * @return Number of steps to that cell, or 0 if the goal point is out of reach
+     */
+    private int getStepsToGoal(int x, int y, Direction direction, int reach) {
+        // Steps towards the goal point along each axis, positive if it lies ahead
+        int stepsX = (goal.x - x) * direction.xOffset, stepsY = (goal.y - y) * direction.yOffset;
+
+        if (!Direction.isDiagonal(direction.xOffset, direction.yOffset)) {
+            int steps = direction.xOffset != 0 ? stepsX : stepsY;
+            boolean isAligned = direction.xOffset != 0 ? goal.y == y : goal.x == x;
+            return isAligned && steps > 0 && steps <= reach ? steps : 0;
+        }
+
+        // Only the diagonal cell sharing a row or a column with the goal point may reach it
+        int steps = Math.min(stepsX, stepsY);
+        if (steps <= 0 || steps > reach) {
+            return 0;
+        }
+        if (stepsX == stepsY) {
+            return steps;
+        }
+
+        int cellX = x + steps * direction.xOffset, cellY = y + steps * direction.yOffset;
+        Direction straight = stepsX < stepsY ? direction.getYSubDirection() : direction.getXSubDirection();
+        int straightDistance = jumpDistances.getDistance(cellX, cellY, straight);
+        return Math.abs(stepsX - stepsY) <= Math.abs(straightDistance) ? steps : 0;
     }
 
     /**
@@ -250,6 +600,10 @@ public class JumpPointSearch {
         List<Cell> jumpPoints = new ArrayList<>();
         List<Cell> neighbors = getNeighbors(curr);
 
+        if (jumpPool != null && neighbors.size() > 1) {
+            return getSuccessorsInParallel(curr, neighbors);
+        }
+
         for (Cell neighbor : neighbors) {
             Direction direction = Direction.findDirectionWithOffsets(neighbor.x - curr.x, neighbor.y - curr.y);
             Cell jumpPoint = getNextJumpPoint(curr, direction);
@@ -262,12 +616,95 @@ public class JumpPointSearch {
         return jumpPoints;
     }
 
+    /**
+     * Same as {@link #getSuccessors}, scanning the directions of the given neighbors in parallel. The first
+     * direction is scanned by the calling thread, the others by the jump pool, unless the calling thread gets to
+     * them first
+     * @param curr
+     * @param neighbors
+     * @return Jump points, in the order of the neighbors
+     */
+    private List<Cell> getSuccessorsInParallel(Cell curr, List<Cell> neighbors) {
+        int x = curr.x, y = curr.y;
+        long[] scanned = new long[neighbors.size()];
+        Direction[] directions = new Direction[neighbors.size()];
+        AtomicIntegerArray isClaimed = new AtomicIntegerArray(neighbors.size());
+        ForkJoinTask<?>[] scans = new ForkJoinTask<?>[neighbors.size()];
+
+        for (int i = 0; i < neighbors.size(); i++) {
+            directions[i] = Direction.findDirectionWithOffsets(neighbors.get(i).x - x, neighbors.get(i).y - y);
+        }
+        for (int i = 1; i < neighbors.size(); i++) {
+            int idx = i;
+            scans[i] = jumpPool.submit(() -> {
+                if (isClaimed.compareAndSet(idx, 0, 1)) {
+                    scanned[idx] = jump(x, y, directions[idx]);
+                }
+            });
+        }
+        scanned[0] = jump(x, y, directions[0]);
+
+        // The searching thread is not a worker of the pool, so join() would only wait for the scans not started
+        // yet: it claims and runs them itself instead, latest first as the pool starts the earliest ones first
+        for (int i = neighbors.size() - 1; i > 0; i--) {
+            if (isClaimed.compareAndSet(i, 0, 1)) {
+                scanned[i] = jump(x, y, directions[i]);
+            }
+        }
+        for (int i = 1; i < neighbors.size(); i++) {
+            scans[i].join();
+        }
+
+        // Nodes are created by the searching thread only
+        List<Cell> jumpPoints = new ArrayList<>();
+        for (long jumpPoint : scanned) {
+            if (jumpPoint != NO_JUMP_POINT) {
+                jumpPoints.add(getNode((int) (jumpPoint >> 32), (int) jumpPoint));
+            }
+        }
+        return jumpPoints;
+    }
+
     /**
      * Finding the minimum-cost path from starting point to the goal point
      * @return
      */
     private List<Cell> findPath() {
-        LinkedList<Cell> path = new LinkedList<>();
+        List<List<Cell>> paths = search(1);
+
+        return paths.isEmpty() ? new LinkedList<>() : paths.get(0);
+    }
+
+    /**
+     * Search from the starting point until the given number of goals are reached
+     * @param goalCount
+     * @return Paths to the reached goals, in order of increasing cost
+     */
+    private List<List<Cell>> search(int goalCount) {
+        List<List<Cell>> paths = new ArrayList<>();
+
+        // Pin the current version of the map for the whole query, unless the query was given one
+        if (grid == null) {
+            grid = map.getSnapshot();
+        }
+        if (jumpDistances != null && (jumpDistances.getSnapshot() != grid || goal == null)) {
+            // Edited since the query started, or one-to-many query: scan
+            jumpDistances = null;
+        }
+        nodes.clear();
+        expansions = 0;
+        nodes.put(start.y * grid.getWidth() + start.x, start);
+        if (goal != null) {
+            nodes.put(goal.y * grid.getWidth() + goal.x, goal);
+        }
+
+        openSet = useFixedPointCosts ? new RadixOpenList() : new HeapOpenList();
+
+        // Only a budgeted search keeps track of the expanded node closest to the goal
+        SearchBudget.Tracker tracker = budget.isUnlimited() ? null : budget.start();
+        Cell closestPos = start;
+        double closestDistance = tracker != null ? estimateDistanceToGoal(start) : 0;
+        partialPath = null;
 
         // Add starting point to the openSet
         openSet.add(start);
@@ -275,29 +712,71 @@ public class JumpPointSearch {
         while (!openSet.isEmpty()) {
             Cell currentPos = openSet.poll();
             closedSet.add(currentPos);
+            expansions++;
+
+            if (isGoal(currentPos.x, currentPos.y)) {
+                paths.add(getPathTo(currentPos));
 
-            if (currentPos.equals(goal)) {
-                // Trace all the way back to identify the path
-                while (currentPos.parent != null) {
-                    path.addFirst(currentPos);
-                    currentPos = currentPos.parent;
+                if (paths.size() >= goalCount) {
+                    break;
+                }
+            }
+
+            if (tracker != null) {
+                double distance = estimateDistanceToGoal(currentPos);
+                if (distance < closestDistance) {
+                    closestPos = currentPos;
+                    closestDistance = distance;
+                }
+
+                if (tracker.check(expansions, openSet.size()) != null) {
+                    partialPath = getPathTo(closestPos);
+                    break;
                 }
-                break;
             }
 
             List<Cell> successors = getSuccessors(currentPos);
 
             for (Cell successor : successors) {
-                double updatedGScore = currentPos.gScore + distanceAlgorithm.getDistance(currentPos, successor);
-
                 if (closedSet.contains(successor)) {
                     continue;
                 }
 
+                if (useFixedPointCosts) {
+                    long updatedGCost = currentPos.gCost +
+                            FixedPointOctileDistance.getFixedPointDistance(currentPos, successor);
+
+                    if (openSet.contains(successor)) {
+                        if (updatedGCost < successor.gCost) {
+                            // f = g + h, the estimate h being unchanged
+                            successor.hCost += updatedGCost - successor.gCost;
+                            successor.hScore = FixedPointOctileDistance.toCells(successor.hCost);
+                            successor.gCost = updatedGCost;
+                            successor.gScore = FixedPointOctileDistance.toCells(updatedGCost);
+                            successor.parent = currentPos;
+                            openSet.decreased(successor);
+                        }
+                    } else {
+                        successor.reset();
+
+                        successor.parent = currentPos;
+                        successor.gCost = updatedGCost;
+                        successor.hCost = updatedGCost + estimateFixedPointDistanceToGoal(successor);
+                        successor.gScore = FixedPointOctileDistance.toCells(successor.gCost);
+                        successor.hScore = FixedPointOctileDistance.toCells(successor.hCost);
+                        openSet.add(successor);
+                    }
+                    continue;
+                }
+
+                double updatedGScore = currentPos.gScore + distanceAlgorithm.getDistance(currentPos, successor);
+
                 if (openSet.contains(successor)) {
                     if (updatedGScore < successor.gScore) {
+                        successor.hScore += updatedGScore - successor.gScore;
                         successor.gScore = updatedGScore;
                         successor.parent = currentPos;
+                        openSet.decreased(successor);
                     }
                 } else {
                     // Clear previous path-finding results, if current successor is first-time-visited
@@ -305,15 +784,155 @@ public class JumpPointSearch {
 
                     successor.parent = currentPos;
                     successor.gScore = updatedGScore;
-                    successor.hScore = updatedGScore + heuristicStrategy.getDistance(successor, goal);
-                    openSet.offer(successor);
+                    successor.hScore = updatedGScore + estimateDistanceToGoal(successor);
+                    openSet.add(successor);
                 }
             }
         }
 
+        return paths;
+    }
+
+    /**
+     * Trace all the way back from the given expanded node to identify the path
+     * @param pos
+     * @return
+     */
+    private List<Cell> getPathTo(Cell pos) {
+        LinkedList<Cell> path = new LinkedList<>();
+        for (Cell pathCell = pos; pathCell.parent != null; pathCell = pathCell.parent) {
+            path.addFirst(pathCell);
+        }
         return path;
     }
 
+    /** ---------- Open lists ---------- */
+
+    private interface OpenList {
+        void add(Cell cell);
+
+        /** Called after the score of a cell already in the list has decreased */
+        void decreased(Cell cell);
+
+        Cell poll();
+
+        boolean contains(Cell cell);
+
+        boolean isEmpty();
+
+        /** Number of entries held, outdated ones included */
+        int size();
+    }
+
+    /**
+     * Binary heap over the floating-point scores of the cost strategy
+     */
+    private class HeapOpenList implements OpenList {
+        private final PriorityQueue<Cell> heap =
+                new PriorityQueue<>(Comparator.comparingDouble(c -> costStrategy.getScore(c)));
+
+        @Override
+        public void add(Cell cell) {
+            heap.offer(cell);
+        }
+
+        @Override
+        public void decreased(Cell cell) {
+            // Linear, yet rare enough: the heap only re-orders on insertion
+            heap.remove(cell);
+            heap.offer(cell);
+        }
+
+        @Override
+        public Cell poll() {
+            return heap.poll();
+        }
+
+        @Override
+        public boolean contains(Cell cell) {
+            return heap.contains(cell);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return heap.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return heap.size();
+        }
+    }
+
+    /**
+     * Radix heap over the fixed-point scores of the cost strategy. A decreased cell is added once more rather than
+     * moved, and its outdated entries are skipped when polled
+     */
+    private class RadixOpenList implements OpenList {
+        private final RadixHeap<Cell> heap = new RadixHeap<>();
+        // Cells are unique per position within a query, identity is enough (and cheaper than Cell#hashCode)
+        private final Set<Cell> members = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final int tieBreakBits;
+
+        RadixOpenList() {
+            // Scores are below (2 * cells + width + height) diagonal steps (g counts at most once per cell and is
+            // added twice by the A* strategy). The tie-break takes the low bits left over by the largest score
+            long width = grid.getWidth(), height = grid.getHeight();
+            long maxScore = (2 * width * height + width + height) * FixedPointOctileDistance.DIAGONAL_COST;
+            int scoreBits = 64 - Long.numberOfLeadingZeros(maxScore);
+
+            tieBreakBits = tieBreakOnHeuristic ? Math.max(0, Math.min(32, 63 - scoreBits)) : 0;
+        }
+
+        private long getKey(Cell cell) {
+            long key = costStrategy.getFixedPointScore(cell);
+            if (tieBreakBits == 0) {
+                return key;
+            }
+
+            // hCost includes g (as hScore does), the heuristic estimate is what is left
+            long estimate = Math.max(0, cell.hCost - cell.gCost);
+            return (key << tieBreakBits) | Math.min(estimate, (1L << tieBreakBits) - 1);
+        }
+
+        @Override
+        public void add(Cell cell) {
+            members.add(cell);
+            heap.add(getKey(cell), cell);
+        }
+
+        @Override
+        public void decreased(Cell cell) {
+            heap.add(getKey(cell), cell);
+        }
+
+        @Override
+        public Cell poll() {
+            while (!heap.isEmpty()) {
+                Cell cell = heap.poll();
+                if (members.remove(cell)) {
+                    return cell;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public boolean contains(Cell cell) {
+            return members.contains(cell);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return members.isEmpty();
+        }
+
+        @Override
+        public int size() {
+            return heap.size();
+        }
+    }
+
     /**
      * Compare our path-finding results with correct results we obtained from other sources
      * @param path
@@ -0,0 +1,153 @@
+import CostStrategy.AStarStrategy;
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Engine.GridDistances;
+import Engine.PathFindingEngine;
+import HeuristicStrategy.EuclideanDistance;
+import HeuristicStrategy.OctileDistance;
+import Preprocessing.PreprocessingBenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * NearestTargetsCheck: Checks the single search of {@link JumpPointSearch#findPathsToNearest} (floating-point &
+ * fixed-point costs) against the default one-query-per-target loop of {@link PathFindingEngine} and against exact
+ * grid distances, on random queries. Exits with status 1 on any mismatch
+ *
+ * The costs of the returned paths are compared rank by rank, as targets at equal cost may come in either order.
+ *
+ * Usage:
+ *   java NearestTargetsCheck [--map <map file> | --size 128 --density 0.25] [--queries 400] [--targets 6]
+ *        [--count 3] [--seed 1]
+ */
+
+public class NearestTargetsCheck {
+    /** Cost deviation accepted, rounding errors of the fixed-point costs included */
+    private static final double TOLERANCE = 1e-3;
+
+    public static void main(String[] args) {
+        String mapFile = null;
+        int size = 128, queryCount = 400, targetCount = 6, count = 3;
+        double density = 0.25;
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--map": mapFile = args[++i]; break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--density": density = Double.parseDouble(args[++i]); break;
+                case "--queries": queryCount = Integer.parseInt(args[++i]); break;
+                case "--targets": targetCount = Integer.parseInt(args[++i]); break;
+                case "--count": count = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Map map;
+        if (mapFile != null) {
+            map = Map.initMap(mapFile);
+        } else {
+            MapSnapshot generated = PreprocessingBenchmark.generateMap(size, size, density, seed);
+            map = Map.initMap(size, size);
+            map.edit(snapshot -> generated);
+        }
+        System.out.println("Map: " + map.getWidth() + " x " + map.getHeight() + " cells, " + queryCount
+                + " queries of the " + count + " nearest of " + targetCount + " targets");
+
+        JumpPointSearch floatingPoint = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance());
+        JumpPointSearch fixedPoint = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance())
+                .initFixedPointCosts(false);
+
+        // Same searches, through the default implementation
+        PathFindingEngine perTarget = new PathFindingEngine() {
+            @Override
+            public List<Cell> findPath(Cell startPos, Cell goalPos) {
+                return floatingPoint.findPath(startPos, goalPos);
+            }
+
+            @Override
+            public Map getMap() {
+                return map;
+            }
+        };
+
+        Random random = new Random(seed);
+        int floatingPointMismatches = 0, fixedPointMismatches = 0, perTargetMismatches = 0;
+
+        for (int query = 0; query < queryCount; query++) {
+            Cell startPos = getWalkablePosition(map, random);
+            List<Cell> targets = new ArrayList<>();
+            while (targets.size() < targetCount) {
+                targets.add(getWalkablePosition(map, random));
+            }
+
+            List<Double> reference = getNearestDistances(new GridDistances(map.getSnapshot(), startPos), targets,
+                    count);
+            floatingPointMismatches += matches(startPos, floatingPoint.findPathsToNearest(startPos, targets, count),
+                    reference) ? 0 : 1;
+            fixedPointMismatches += matches(startPos, fixedPoint.findPathsToNearest(startPos, targets, count),
+                    reference) ? 0 : 1;
+            perTargetMismatches += matches(startPos, perTarget.findPathsToNearest(startPos, targets, count),
+                    reference) ? 0 : 1;
+        }
+
+        System.out.println(String.format("%-28s mismatches: %d / %d", "Single search", floatingPointMismatches,
+                queryCount));
+        System.out.println(String.format("%-28s mismatches: %d / %d", "Single search, fixed-point",
+                fixedPointMismatches, queryCount));
+        System.out.println(String.format("%-28s mismatches: %d / %d", "One query per target", perTargetMismatches,
+                queryCount));
+
+        if (floatingPointMismatches + fixedPointMismatches + perTargetMismatches > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static Cell getWalkablePosition(Map map, Random random) {
+        while (true) {
+            Cell pos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            if (map.isPositionWalkable(pos.x, pos.y)) {
+                return pos;
+            }
+        }
+    }
+
+    /**
+     * @return Exact costs to the (at most count) nearest reachable targets, in increasing order
+     */
+    private static List<Double> getNearestDistances(GridDistances distances, List<Cell> targets, int count) {
+        List<Double> nearest = new ArrayList<>();
+        List<Cell> distinctTargets = new ArrayList<>();
+        for (Cell target : targets) {
+            double distance = distances.getDistance(target.x, target.y);
+            if (!distinctTargets.contains(target) && distance != Double.POSITIVE_INFINITY) {
+                distinctTargets.add(target);
+                nearest.add(distance);
+            }
+        }
+
+        nearest.sort(null);
+        return nearest.subList(0, Math.min(count, nearest.size()));
+    }
+
+    /**
+     * Check that the given paths have the reference costs, rank by rank
+     */
+    private static boolean matches(Cell startPos, List<List<Cell>> paths, List<Double> reference) {
+        if (paths.size() != reference.size()) {
+            return false;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            if (Math.abs(PathFindingEngine.getPathCost(startPos, paths.get(i)) - reference.get(i)) > TOLERANCE) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,139 @@
+import CostStrategy.AStarStrategy;
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Engine.GridDistances;
+import Engine.PathFindingEngine;
+import HeuristicStrategy.EuclideanDistance;
+import HeuristicStrategy.OctileDistance;
+import Preprocessing.PreprocessingBenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * ParallelJumpBenchmark: Compares the sequential JPS with parallel jumps (see
+ * {@link JumpPointSearch#initParallelJumps}) on single queries across random maps of several obstacle densities,
+ * and checks that both return the very same paths, of the exact minimum costs (grid Dijkstra)
+ *
+ * The lower the density, the longer the scans of a node, and the more the parallel mode gains over the fork-join
+ * overhead. The densities where the speedup exceeds 1 tell on which maps "jps-parallel" is worth it, on the
+ * hardware at hand.
+ *
+ * Usage:
+ *   java ParallelJumpBenchmark [--map <map file> | --size 2048 --density 0.05 --density 0.2 ...]
+ *        [--queries 20] [--rounds 3] [--threads <number of cores>] [--seed 1]
+ */
+
+public class ParallelJumpBenchmark {
+
+    public static void main(String[] args) {
+        String mapFile = null;
+        int size = 2048, queryCount = 20, rounds = 3;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Double> densities = new ArrayList<>();
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--map": mapFile = args[++i]; break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--density": densities.add(Double.parseDouble(args[++i])); break;
+                case "--queries": queryCount = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (densities.isEmpty()) {
+            densities.add(0.01);
+            densities.add(0.05);
+            densities.add(0.2);
+            densities.add(0.35);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        System.out.println(String.format("%d queries per map, best of %d rounds, %d jump threads", queryCount,
+                rounds, threads));
+        System.out.println(String.format("%-24s %12s %12s %8s %14s %10s %10s", "Map", "sequential", "parallel",
+                "speedup", "expansions", "same paths", "optimal"));
+
+        if (mapFile != null) {
+            run(mapFile, Map.initMap(mapFile), queryCount, rounds, pool, seed);
+        } else {
+            for (double density : densities) {
+                MapSnapshot generated = PreprocessingBenchmark.generateMap(size, size, density, seed);
+                Map map = Map.initMap(size, size);
+                map.edit(snapshot -> generated);
+                run(String.format("%dx%d, density %.2f", size, size, density), map, queryCount, rounds, pool, seed);
+            }
+        }
+        pool.shutdown();
+    }
+
+    private static void run(String name, Map map, int queryCount, int rounds, ForkJoinPool pool, long seed) {
+        // Random pairs of walkable positions, far apart as single huge queries are the target of the parallel mode
+        Random random = new Random(seed);
+        List<Cell[]> queries = new ArrayList<>();
+        int minDistance = Math.max(map.getWidth(), map.getHeight()) / 2;
+        for (int attempt = 0; queries.size() < queryCount && attempt < queryCount * 1000; attempt++) {
+            Cell startPos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            Cell goalPos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            if (map.isPositionWalkable(startPos.x, startPos.y) && map.isPositionWalkable(goalPos.x, goalPos.y) &&
+                    Math.max(Math.abs(startPos.x - goalPos.x), Math.abs(startPos.y - goalPos.y)) >= minDistance) {
+                queries.add(new Cell[] {startPos, goalPos});
+            }
+        }
+
+        JumpPointSearch sequential = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance());
+        JumpPointSearch parallel = JumpPointSearch.newPathFinding(map,
+                new AStarStrategy(), new EuclideanDistance(), new OctileDistance())
+                .initParallelJumps(pool);
+
+        List<List<Cell>> sequentialPaths = new ArrayList<>(), parallelPaths = new ArrayList<>();
+        double sequentialMillis = time(sequential, queries, rounds, sequentialPaths);
+        double parallelMillis = time(parallel, queries, rounds, parallelPaths);
+
+        long expansions = 0;
+        for (Cell[] query : queries) {
+            expansions += sequential.query(query[0], query[1]).expansions;
+        }
+
+        int samePaths = 0, optimalPaths = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            samePaths += sequentialPaths.get(i).equals(parallelPaths.get(i)) ? 1 : 0;
+
+            Cell goalPos = queries.get(i)[1];
+            GridDistances distances = new GridDistances(map.getSnapshot(), queries.get(i)[0], goalPos);
+            optimalPaths += distances.isOptimal(goalPos, sequentialPaths.get(i), 1e-6) &&
+                    distances.isOptimal(goalPos, parallelPaths.get(i), 1e-6) ? 1 : 0;
+        }
+
+        System.out.println(String.format("%-24s %9.1f ms %9.1f ms %8.2f %14d %6d / %d %6d / %d", name,
+                sequentialMillis, parallelMillis, sequentialMillis / parallelMillis,
+                queries.isEmpty() ? 0 : expansions / queries.size(), samePaths, queries.size(), optimalPaths,
+                queries.size()));
+    }
+
+    /**
+     * Time the given engine on all queries (best of the given number of rounds)
+     * @return Best time, in milliseconds
+     */
+    private static double time(PathFindingEngine engine, List<Cell[]> queries, int rounds, List<List<Cell>> paths) {
+        long best = Long.MAX_VALUE;
+
+        for (int round = 0; round < rounds; round++) {
+            paths.clear();
+            long begin = System.nanoTime();
+            for (Cell[] query : queries) {
+                paths.add(engine.findPath(query[0], query[1]));
+            }
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        return best / 1e6;
+    }
+}
@@ -0,0 +1,165 @@
+import DataStructures.Map;
+import Engine.AsyncPathFinder;
+import Engine.PathFindingEngine;
+import Engine.SearchBudget;
+import Service.MapRegistry;
+import Service.PathFindingServer;
+import Service.Protocol;
+import Service.VirtualThreads;
+import Tracing.QueryRecorder;
+import Tracing.TraceWriter;
+
+import java.net.SocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * PathFindingService: Standalone service answering path-finding queries over a local socket
+ *
+ * Usage:
+ *   java PathFindingService [--address tcp:127.0.0.1:7070 | --address unix:/tmp/jps.sock]
+ *        [--pipeline 64] [--workers <number of cores>] [--record <trace file>] [--index-dir <directory>]
+ *        [--engine jps] [--max-expansions <n>] [--max-open-nodes <n>] [--max-time-ms <n>]
+ *        <mapId>=<map file> ... [--engine subgoal <mapId>=<map file> ...]
+ *
+ * Every map is loaded once at startup. See {@link Protocol} for the wire format and
+ * {@link Service.PathFindingLoadGenerator} for measuring the service.
+ *
+ * --engine selects the engine of the maps listed after it (see {@link EngineFactory} for the names).
+ * Likewise, the --max-* options set the search budget of the maps listed after them (0 for no limit): a query
+ * exceeding it is answered with a partial path and the BUDGET_EXCEEDED status. The number of such queries is
+ * printed per map at shutdown, for tuning the limits.
+ * With --record, every query is appended to the given trace file, which TraceReplay re-runs offline.
+ * With --index-dir, the index-based engines start from the index file <directory>/<mapId>.idx, which is
+ * (re)built in the background if missing or stale, plain JPS answering the queries meanwhile (see
+ * {@link Engine.WarmStartEngine}).
+ */
+
+public class PathFindingService {
+
+    public static void main(String[] args) throws Exception {
+        String endpoint = "tcp:127.0.0.1:7070";
+        int pipeline = 64;
+        int workers = Runtime.getRuntime().availableProcessors();
+        String traceFile = null;
+        String indexDirectory = null;
+        String engineName = EngineFactory.DEFAULT_ENGINE;
+        long maxExpansions = 0, maxOpenNodes = 0, maxTimeMillis = 0;
+        List<String[]> mapSpecs = new ArrayList<>();            // Map spec & engine name
+        List<SearchBudget> budgets = new ArrayList<>();         // Budget of every map spec
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--address": endpoint = args[++i]; break;
+                case "--pipeline": pipeline = Integer.parseInt(args[++i]); break;
+                case "--workers": workers = Integer.parseInt(args[++i]); break;
+                case "--record": traceFile = args[++i]; break;
+                case "--index-dir": indexDirectory = args[++i]; break;
+                case "--engine": engineName = args[++i]; break;
+                case "--max-expansions": maxExpansions = Long.parseLong(args[++i]); break;
+                case "--max-open-nodes": maxOpenNodes = Long.parseLong(args[++i]); break;
+                case "--max-time-ms": maxTimeMillis = Long.parseLong(args[++i]); break;
+                default:
+                    mapSpecs.add(new String[] {args[i], engineName});
+                    budgets.add(newBudget(maxExpansions, maxOpenNodes, maxTimeMillis));
+            }
+        }
+        if (mapSpecs.isEmpty()) {
+            mapSpecs.add(new String[] {"maze-100-1=./mapFiles/maze-100-1.map", engineName});
+            budgets.add(newBudget(maxExpansions, maxOpenNodes, maxTimeMillis));
+        }
+
+        TraceWriter traceWriter = traceFile != null ? new TraceWriter(traceFile) : null;
+        MapRegistry registry = new MapRegistry();
+        for (int i = 0; i < mapSpecs.size(); i++) {
+            String[] mapSpecAndEngine = mapSpecs.get(i);
+            String mapSpec = mapSpecAndEngine[0];
+            int separator = mapSpec.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid map (expected <mapId>=<map file>): " + mapSpec);
+            }
+
+            String mapId = mapSpec.substring(0, separator);
+            Map map = Map.initMap(mapSpec.substring(separator + 1));
+            PathFindingEngine engine = indexDirectory != null
+                    ? EngineFactory.createWarmStart(mapSpecAndEngine[1], map, Paths.get(indexDirectory, mapId + ".idx"))
+                    : EngineFactory.create(mapSpecAndEngine[1], map);
+
+            registry.register(mapId, engine, budgets.get(i));
+        }
+
+        ExecutorService searchExecutor = Executors.newFixedThreadPool(workers);
+        PathFindingServer server = new PathFindingServer(registry, searchExecutor, pipeline,
+                traceWriter != null ? new QueryRecorder(traceWriter) : null);
+        SocketAddress address = server.bind(Protocol.parseAddress(endpoint));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            searchExecutor.shutdownNow();
+
+            for (String mapId : registry.getMapIds()) {
+                AsyncPathFinder pathFinder = server.getPathFinder(mapId);
+                if (pathFinder != null) {
+                    System.out.println(String.format("Map %s: %d queries, %.1f%% coalesced with an identical "
+                            + "query in flight", mapId, pathFinder.getQueries(),
+                            100 * pathFinder.getCoalescingRatio()));
+                }
+
+                SearchBudget budget = registry.getBudget(mapId);
+                if (!budget.isUnlimited()) {
+                    System.out.println("Map " + mapId + ": " + budget.getExceededQueries() + " of "
+                            + budget.getBudgetedQueries() + " queries exceeded the budget (expansions: "
+                            + budget.getExceededQueries(SearchBudget.Limit.EXPANSIONS) + ", open nodes: "
+                            + budget.getExceededQueries(SearchBudget.Limit.OPEN_NODES) + ", time: "
+                            + budget.getExceededQueries(SearchBudget.Limit.TIME) + ")");
+                }
+            }
+
+            if (traceWriter != null) {
+                try {
+                    traceWriter.close();
+                    System.out.println("Recorded " + traceWriter.getRecordCount() + " queries");
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }));
+
+        for (String mapId : registry.getMapIds()) {
+            System.out.println("Map " + mapId + ": " + registry.getEngine(mapId).getName() + ", search budget: "
+                    + registry.getBudget(mapId));
+        }
+        System.out.println("Serving maps " + registry.getMapIds() + " on " + address + " (" + workers
+                + " search workers, pipeline depth " + pipeline + ", virtual threads: "
+                + VirtualThreads.isAvailable() + ")");
+        server.serve();
+    }
+
+    /**
+     * @return A new budget with the given limits (0 for no limit), or the unlimited budget if none is given
+     */
+    private static SearchBudget newBudget(long maxExpansions, long maxOpenNodes, long maxTimeMillis) {
+        if (maxExpansions <= 0 && maxOpenNodes <= 0 && maxTimeMillis <= 0) {
+            return SearchBudget.UNLIMITED;
+        }
+
+        SearchBudget budget = new SearchBudget();
+        if (maxExpansions > 0) {
+            budget.initMaxExpansions(maxExpansions);
+        }
+        if (maxOpenNodes > 0) {
+            budget.initMaxOpenNodes(maxOpenNodes);
+        }
+        if (maxTimeMillis > 0) {
+            budget.initMaxTimeMillis(maxTimeMillis);
+        }
+        return budget;
+    }
+}
@@ -0,0 +1,170 @@
+package Preprocessing;
+
+import DataStructures.MapSnapshot;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * ComponentIndex: Labels every walkable cell with its connected component, so that unreachable goals are detected
+ * without searching the whole component of the start
+ *
+ * Cells are connected along the moves allowed by {@link MapSnapshot#reachable}. Labels come out of a concurrent
+ * union-find which always links the larger root below the smaller one, so the label of a component is the
+ * smallest index (y * width + x) of its cells, whatever the number of threads.
+ *
+ * Phases:
+ *   1) Rows:    join horizontally adjacent walkable cells
+ *   2) Rows:    join every row with the row above it (vertical & diagonal moves)
+ *   3) Rows:    replace every entry by the root of its component
+ */
+
+public class ComponentIndex {
+    /** Label of obstacles */
+    public static final int NO_COMPONENT = -1;
+
+    private final int width, height;
+    /** Either an array or a section of an {@link IndexSnapshot} file */
+    private final IntBuffer labels;
+    private final int componentCount;
+
+    ComponentIndex(int width, int height, IntBuffer labels, int componentCount) {
+        this.width = width;
+        this.height = height;
+        this.labels = labels;
+        this.componentCount = componentCount;
+    }
+
+    public static ComponentIndex compute(MapSnapshot grid, ParallelPreprocessor preprocessor) {
+        int width = grid.getWidth();
+        AtomicIntegerArray parents = new AtomicIntegerArray(width * grid.getHeight());
+
+        preprocessor.run(grid,
+                new ParallelPreprocessor.Phase("components (rows)", LineKind.ROW, (g, kind, y) -> {
+                    for (int x = 0; x < width; x++) {
+                        parents.set(y * width + x, g.isObstacleAt(x, y) ? NO_COMPONENT : y * width + x);
+                    }
+                    for (int x = 0; x + 1 < width; x++) {
+                        if (g.isPositionWalkable(x, y) && g.isPositionWalkable(x + 1, y)) {
+                            union(parents, y * width + x, y * width + x + 1);
+                        }
+                    }
+                }),
+                new ParallelPreprocessor.Phase("components (row pairs)", LineKind.ROW, (g, kind, y) -> {
+                    if (y + 1 >= g.getHeight()) {
+                        return;
+                    }
+                    for (int x = 0; x < width; x++) {
+                        if (g.isObstacleAt(x, y)) {
+                            continue;
+                        }
+                        for (int aboveX = x - 1; aboveX <= x + 1; aboveX++) {
+                            if (g.reachable(x, y, aboveX, y + 1)) {
+                                union(parents, y * width + x, (y + 1) * width + aboveX);
+                            }
+                        }
+                    }
+                }),
+                new ParallelPreprocessor.Phase("components (labels)", LineKind.ROW, (g, kind, y) -> {
+                    for (int idx = y * width; idx < (y + 1) * width; idx++) {
+                        if (parents.get(idx) != NO_COMPONENT) {
+                            parents.set(idx, find(parents, idx));
+                        }
+                    }
+                }));
+
+        int[] labels = new int[parents.length()];
+        int componentCount = 0;
+        for (int idx = 0; idx < labels.length; idx++) {
+            labels[idx] = parents.get(idx);
+            componentCount += labels[idx] == idx ? 1 : 0;
+        }
+
+        return new ComponentIndex(width, grid.getHeight(), IntBuffer.wrap(labels), componentCount);
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @return Label of the component of the given position, NO_COMPONENT for obstacles & positions outside the map
+     */
+    public int getComponent(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return NO_COMPONENT;
+        }
+        return labels.get(y * width + x);
+    }
+
+    /**
+     * Check if a path exists between the two given positions
+     */
+    public boolean isConnected(int fromX, int fromY, int toX, int toY) {
+        int component = getComponent(fromX, fromY);
+        return component != NO_COMPONENT && component == getComponent(toX, toY);
+    }
+
+    public int getComponentCount() {
+        return componentCount;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The labels, indexed by y * width + x (read-only view)
+     */
+    IntBuffer getLabels() {
+        return labels.asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Order-sensitive hash of all labels, for checking that runs with different parallelism agree
+     */
+    public long checksum() {
+        long checksum = 1;
+        for (int idx = 0; idx < labels.limit(); idx++) {
+            checksum = checksum * 31 + labels.get(idx);
+        }
+        return checksum;
+    }
+
+    /** ---------- Lock-free union-find ---------- */
+
+    private static int find(AtomicIntegerArray parents, int idx) {
+        while (true) {
+            int parent = parents.get(idx);
+            if (parent == idx) {
+                return idx;
+            }
+
+            // Path halving, losing the race only means skipping the shortcut
+            int grandParent = parents.get(parent);
+            if (grandParent != parent) {
+                parents.compareAndSet(idx, parent, grandParent);
+            }
+            idx = grandParent;
+        }
+    }
+
+    private static void union(AtomicIntegerArray parents, int a, int b) {
+        while (true) {
+            int rootA = find(parents, a);
+            int rootB = find(parents, b);
+            if (rootA == rootB) {
+                return;
+            }
+
+            // Always link the larger root below the smaller one
+            int larger = Math.max(rootA, rootB);
+            int smaller = Math.min(rootA, rootB);
+            if (parents.compareAndSet(larger, larger, smaller)) {
+                return;
+            }
+        }
+    }
+}
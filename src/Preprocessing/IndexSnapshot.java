@@ -0,0 +1,419 @@
+package Preprocessing;
+
+import DataStructures.Direction;
+import DataStructures.MapSnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * IndexSnapshot: The derived indexes of one version of a map, along with the file format storing all of them, so
+ * that a restarted process maps them from disk instead of recomputing them
+ *
+ * File format (little-endian, every section 8-byte aligned):
+ *
+ *   Header:         | magic "JPSI" (int) | format version (int) | width (int) | height (int) |
+ *                   | content hash of the map (long) | number of sections (int) | 0 (int) |
+ *   Section table:  | section id (int) | 0 (int) | offset (long) | length in bytes (long) |  once per section
+ *   Sections:       int arrays, see {@link Section}
+ *
+ * Loading maps every section read-only and reads the indexes straight from the mapped pages (zero copy), so that
+ * the startup cost does not depend on the size of the indexes and the pages are shared by processes serving the
+ * same map. A file is stale if it was written by another version of the format or for other map contents (see
+ * {@link MapSnapshot#getContentHash}), or lacks a requested section: {@link #load} then returns null and the
+ * caller decides whether to rebuild it. Unknown sections are skipped, so that older readers accept newer files.
+ *
+ * Files are written to a temporary file first, then moved over the previous one: readers see either file whole.
+ */
+
+public class IndexSnapshot {
+    public static final int MAGIC = 0x4A505349;              // "JPSI"
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+    private static final int SECTION_ENTRY_BYTES = 24;
+    /** Size of the buffer the sections are written through */
+    private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+    public enum Section {
+        /** | componentCount | labels (width * height) | */
+        COMPONENTS(1),
+        /** | distances (width * height) of every direction, in the order of Direction.values() | */
+        JUMP_DISTANCES(2),
+        /** | subgoalCount | edgeCount | ids (width * height) | xs | ys | edgeOffsets (subgoalCount + 1) | targets | */
+        SUBGOAL_GRAPH(3),
+        /** | rectangleCount | ids (width * height) | minX, minY, maxX, maxY of every rectangle | */
+        RECTANGLES(4);
+
+        public final int id;
+
+        Section(int id) {
+            this.id = id;
+        }
+
+        static Section fromId(int id) {
+            for (Section section : values()) {
+                if (section.id == id) {
+                    return section;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final MapSnapshot grid;
+    private final boolean isMapped;
+    private ComponentIndex components;
+    private JumpDistanceIndex jumpDistances;
+    private SubgoalGraph subgoalGraph;
+    private RectangleDecomposition rectangles;
+
+    private IndexSnapshot(MapSnapshot grid, boolean isMapped) {
+        this.grid = grid;
+        this.isMapped = isMapped;
+    }
+
+    /**
+     * Compute the given indexes of a snapshot
+     * @param grid
+     * @param preprocessor Runs the parallel phases (the rectangle decomposition is sequential)
+     * @param sections
+     * @return
+     */
+    public static IndexSnapshot compute(MapSnapshot grid, ParallelPreprocessor preprocessor, Set<Section> sections) {
+        IndexSnapshot snapshot = new IndexSnapshot(grid, false);
+
+        if (sections.contains(Section.COMPONENTS)) {
+            snapshot.components = ComponentIndex.compute(grid, preprocessor);
+        }
+        if (sections.contains(Section.JUMP_DISTANCES)) {
+            snapshot.jumpDistances = JumpDistanceIndex.compute(grid, preprocessor);
+        }
+        if (sections.contains(Section.SUBGOAL_GRAPH)) {
+            snapshot.subgoalGraph = SubgoalGraph.compute(grid, preprocessor);
+        }
+        if (sections.contains(Section.RECTANGLES)) {
+            snapshot.rectangles = RectangleDecomposition.compute(grid);
+        }
+        return snapshot;
+    }
+
+    /** ---------- Writing ---------- */
+
+    /**
+     * Write the indexes to the given file, replacing it atomically
+     * @param file
+     * @throws IOException
+     */
+    public void write(Path file) throws IOException {
+        List<Section> sections = new ArrayList<>(getSections());
+        List<List<IntBuffer>> contents = new ArrayList<>();
+        for (Section section : sections) {
+            contents.add(getContent(section));
+        }
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + sections.size() * SECTION_ENTRY_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(grid.getWidth()).putInt(grid.getHeight())
+                    .putLong(grid.getContentHash()).putInt(sections.size()).putInt(0);
+
+            long[] offsets = new long[sections.size()];
+            long offset = align(header.capacity());
+            for (int i = 0; i < sections.size(); i++) {
+                long length = 0;
+                for (IntBuffer array : contents.get(i)) {
+                    length += (long) array.limit() * Integer.BYTES;
+                }
+                header.putInt(sections.get(i).id).putInt(0).putLong(offset).putLong(length);
+                offsets[i] = offset;
+                offset = align(offset + length);
+            }
+            header.flip();
+            writeFully(channel, header, 0);
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < sections.size(); i++) {
+                long position = offsets[i];
+                for (IntBuffer array : contents.get(i)) {
+                    position = writeInts(channel, buffer, array, position);
+                }
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporaryFile);
+            throw e;
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return The int arrays making up the given section, in file order
+     */
+    private List<IntBuffer> getContent(Section section) {
+        List<IntBuffer> content = new ArrayList<>();
+        switch (section) {
+            case COMPONENTS:
+                content.add(IntBuffer.wrap(new int[] {components.getComponentCount()}));
+                content.add(components.getLabels());
+                break;
+            case JUMP_DISTANCES:
+                for (Direction direction : Direction.values()) {
+                    content.add(jumpDistances.getDistances(direction));
+                }
+                break;
+            case SUBGOAL_GRAPH:
+                content.add(IntBuffer.wrap(new int[] {subgoalGraph.getSubgoalCount(),
+                        subgoalGraph.getEdgeTargets().limit()}));
+                content.add(subgoalGraph.getSubgoalIds());
+                content.add(subgoalGraph.getSubgoalXs());
+                content.add(subgoalGraph.getSubgoalYs());
+                content.add(subgoalGraph.getEdgeOffsets());
+                content.add(subgoalGraph.getEdgeTargets());
+                break;
+            case RECTANGLES:
+                content.add(IntBuffer.wrap(new int[] {rectangles.getRectangleCount()}));
+                content.add(rectangles.getRectangleIds());
+                content.add(rectangles.getBounds());
+                break;
+        }
+        return content;
+    }
+
+    private static long writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer array, long position)
+            throws IOException {
+        IntBuffer source = array.duplicate();
+        source.rewind();
+
+        while (source.hasRemaining()) {
+            buffer.clear();
+            IntBuffer target = buffer.asIntBuffer();
+            int count = Math.min(target.remaining(), source.remaining());
+            IntBuffer chunk = source.slice();
+            chunk.limit(count);
+            target.put(chunk);
+            source.position(source.position() + count);
+
+            buffer.limit(count * Integer.BYTES);
+            position += writeFully(channel, buffer, position);
+        }
+        return position;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /** ---------- Loading ---------- */
+
+    /**
+     * Map the indexes stored in the given file
+     * @param file
+     * @param grid Snapshot the indexes must match
+     * @param sections Sections that must be present
+     * @return The indexes, or null if the file is missing or stale (see the description of the class)
+     * @throws IOException If the file cannot be read or is malformed
+     */
+    public static IndexSnapshot load(Path file, MapSnapshot grid, Set<Section> sections) throws IOException {
+        // The mappings stay valid once the channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES, fileSize);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an index snapshot: " + file);
+            }
+            if (header.getInt() != FORMAT_VERSION || header.getInt() != grid.getWidth() ||
+                    header.getInt() != grid.getHeight() || header.getLong() != grid.getContentHash()) {
+                return null;
+            }
+            int sectionCount = header.getInt();
+            if (sectionCount < 0 || sectionCount > 1024) {
+                throw new IOException("Invalid section count " + sectionCount + ": " + file);
+            }
+
+            ByteBuffer table = readFully(channel, HEADER_BYTES, sectionCount * SECTION_ENTRY_BYTES, fileSize);
+            IndexSnapshot snapshot = new IndexSnapshot(grid, true);
+            for (int i = 0; i < sectionCount; i++) {
+                Section section = Section.fromId(table.getInt());
+                table.getInt();
+                long offset = table.getLong(), length = table.getLong();
+                if (offset < 0 || length < 0 || offset + length > fileSize || length % Integer.BYTES != 0 ||
+                        length > Integer.MAX_VALUE) {
+                    throw new IOException("Invalid section at " + offset + " (" + length + " bytes): " + file);
+                }
+                if (section == null || !sections.contains(section)) {
+                    continue;
+                }
+
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                snapshot.readSection(section, mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(), file);
+            }
+
+            return snapshot.getSections().containsAll(sections) ? snapshot : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length, long fileSize)
+            throws IOException {
+        if (position + length > fileSize) {
+            throw new IOException("Truncated index snapshot");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated index snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readSection(Section section, IntBuffer ints, Path file) throws IOException {
+        int cellCount = grid.getWidth() * grid.getHeight();
+
+        switch (section) {
+            case COMPONENTS: {
+                checkLength(ints, 1 + (long) cellCount, section, file);
+                components = new ComponentIndex(grid.getWidth(), grid.getHeight(), slice(ints, 1, cellCount),
+                        ints.get(0));
+                break;
+            }
+            case JUMP_DISTANCES: {
+                int directionCount = Direction.values().length;
+                checkLength(ints, (long) directionCount * cellCount, section, file);
+                IntBuffer[] distances = new IntBuffer[directionCount];
+                for (int i = 0; i < directionCount; i++) {
+                    distances[i] = slice(ints, i * cellCount, cellCount);
+                }
+                jumpDistances = new JumpDistanceIndex(grid, distances);
+                break;
+            }
+            case SUBGOAL_GRAPH: {
+                checkLength(ints, 2, section, file);
+                int subgoalCount = ints.get(0), edgeCount = ints.get(1);
+                checkLength(ints, 2 + (long) cellCount + 3L * subgoalCount + 1 + edgeCount, section, file);
+                int position = 2;
+                IntBuffer ids = slice(ints, position, cellCount);
+                IntBuffer xs = slice(ints, position += cellCount, subgoalCount);
+                IntBuffer ys = slice(ints, position += subgoalCount, subgoalCount);
+                IntBuffer edgeOffsets = slice(ints, position += subgoalCount, subgoalCount + 1);
+                IntBuffer edgeTargets = slice(ints, position + subgoalCount + 1, edgeCount);
+                subgoalGraph = new SubgoalGraph(grid, ids, xs, ys, edgeOffsets, edgeTargets);
+                break;
+            }
+            case RECTANGLES: {
+                checkLength(ints, 1, section, file);
+                int rectangleCount = ints.get(0);
+                checkLength(ints, 1 + (long) cellCount + 4L * rectangleCount, section, file);
+                rectangles = new RectangleDecomposition(grid, slice(ints, 1, cellCount),
+                        slice(ints, 1 + cellCount, rectangleCount * 4), rectangleCount);
+                break;
+            }
+        }
+    }
+
+    private static void checkLength(IntBuffer ints, long minLength, Section section, Path file) throws IOException {
+        if (minLength < 0 || ints.limit() < minLength) {
+            throw new IOException("Truncated section " + section + ": " + file);
+        }
+    }
+
+    private static IntBuffer slice(IntBuffer ints, int position, int length) {
+        IntBuffer slice = ints.duplicate();
+        slice.position(position).limit(position + length);
+        return slice.slice();
+    }
+
+    /** ---------- Accessors ---------- */
+
+    /**
+     * @return The sections held, in file order
+     */
+    public Set<Section> getSections() {
+        Set<Section> sections = EnumSet.noneOf(Section.class);
+        if (components != null) {
+            sections.add(Section.COMPONENTS);
+        }
+        if (jumpDistances != null) {
+            sections.add(Section.JUMP_DISTANCES);
+        }
+        if (subgoalGraph != null) {
+            sections.add(Section.SUBGOAL_GRAPH);
+        }
+        if (rectangles != null) {
+            sections.add(Section.RECTANGLES);
+        }
+        return Collections.unmodifiableSet(sections);
+    }
+
+    /**
+     * @return The snapshot the indexes belong to
+     */
+    public MapSnapshot getSnapshot() {
+        return grid;
+    }
+
+    /**
+     * @return true if the indexes are read from a mapped file, false if they were computed
+     */
+    public boolean isMapped() {
+        return isMapped;
+    }
+
+    /**
+     * @return The connected components, or null if not held
+     */
+    public ComponentIndex getComponents() {
+        return components;
+    }
+
+    /**
+     * @return The jump distances, or null if not held
+     */
+    public JumpDistanceIndex getJumpDistances() {
+        return jumpDistances;
+    }
+
+    /**
+     * @return The subgoal graph, or null if not held
+     */
+    public SubgoalGraph getSubgoalGraph() {
+        return subgoalGraph;
+    }
+
+    /**
+     * @return The rectangle decomposition, or null if not held
+     */
+    public RectangleDecomposition getRectangles() {
+        return rectangles;
+    }
+}
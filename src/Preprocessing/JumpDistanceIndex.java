@@ -0,0 +1,151 @@
+package Preprocessing;
+
+import DataStructures.Direction;
+import DataStructures.MapSnapshot;
+
+import java.nio.IntBuffer;
+
+/**
+ * JumpDistanceIndex: Goal-independent jump distances of every cell in all 8 directions (as in JPS+)
+ *
+ * For a walkable cell and a direction, the entry is:
+ *   k > 0:  the next jump point lies k steps away in that direction
+ *   k <= 0: there is no jump point in that direction, and the way is blocked after -k steps
+ * Entries of obstacles are 0.
+ *
+ * Jump points follow the pruning rules of {@link DataStructures.MapSnapshot#getForcedNeighborMask}, the goal is
+ * not taken into account: a query still has to check whether its goal lies within the scanned distance.
+ *
+ * Reference: Steve Rabin, Fernando Silva, "JPS+: An Extreme A* Speed Optimization for Static Uniform Cost Grids"
+ */
+
+public class JumpDistanceIndex {
+    private final MapSnapshot grid;
+    private final int width, height;
+    /** Indexed by [Direction#ordinal()].get(y * width + x), arrays or sections of an {@link IndexSnapshot} file */
+    private final IntBuffer[] distances;
+
+    JumpDistanceIndex(MapSnapshot grid, IntBuffer[] distances) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.distances = distances;
+    }
+
+    /**
+     * Compute the index of the given snapshot. Straight directions are computed first (rows & columns), then the
+     * diagonal ones, which depend on them
+     * @param grid
+     * @param preprocessor
+     * @return
+     */
+    public static JumpDistanceIndex compute(MapSnapshot grid, ParallelPreprocessor preprocessor) {
+        IntBuffer[] distances = new IntBuffer[Direction.values().length];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = IntBuffer.wrap(new int[grid.getWidth() * grid.getHeight()]);
+        }
+        JumpDistanceIndex index = new JumpDistanceIndex(grid, distances);
+
+        preprocessor.run(grid,
+                new ParallelPreprocessor.Phase("jump distances (rows)", LineKind.ROW,
+                        (g, kind, line) -> index.sweepLine(g, kind, line, Direction.LEFT, Direction.RIGHT)),
+                new ParallelPreprocessor.Phase("jump distances (columns)", LineKind.COLUMN,
+                        (g, kind, line) -> index.sweepLine(g, kind, line, Direction.BOTTOM, Direction.TOP)),
+                new ParallelPreprocessor.Phase("jump distances (diagonals)", LineKind.DIAGONAL,
+                        (g, kind, line) -> index.sweepLine(g, kind, line, Direction.BOTTOM_LEFT, Direction.TOP_RIGHT)),
+                new ParallelPreprocessor.Phase("jump distances (anti-diagonals)", LineKind.ANTI_DIAGONAL,
+                        (g, kind, line) -> index.sweepLine(g, kind, line, Direction.TOP_LEFT, Direction.BOTTOM_RIGHT)));
+
+        return index;
+    }
+
+    /**
+     * @param x
+     * @param y
+     * @param direction
+     * @return See the description of the class
+     */
+    public int getDistance(int x, int y, Direction direction) {
+        return distances[direction.ordinal()].get(y * width + x);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The snapshot the index was computed on
+     */
+    public MapSnapshot getSnapshot() {
+        return grid;
+    }
+
+    /**
+     * @return The distances of the given direction, indexed by y * width + x (read-only view)
+     */
+    IntBuffer getDistances(Direction direction) {
+        return distances[direction.ordinal()].asReadOnlyBuffer();
+    }
+
+    /**
+     * Compute the entries of a line for both directions running along it
+     */
+    private void sweepLine(MapSnapshot grid, LineKind kind, int line, Direction backward, Direction forward) {
+        int startX = kind.getStartX(line, width, height);
+        int startY = kind.getStartY(line, width, height);
+        int length = kind.getLineLength(line, width, height);
+
+        // Going forward, the entry of a cell derives from the entry of the next cell, so walk the line backwards
+        for (int i = length - 1; i >= 0; i--) {
+            computeEntry(grid, startX + i * kind.xStep, startY + i * kind.yStep, forward);
+        }
+        for (int i = 0; i < length; i++) {
+            computeEntry(grid, startX + i * kind.xStep, startY + i * kind.yStep, backward);
+        }
+    }
+
+    private void computeEntry(MapSnapshot grid, int x, int y, Direction direction) {
+        IntBuffer directionDistances = distances[direction.ordinal()];
+        int idx = y * width + x;
+
+        if (grid.isObstacleAt(x, y)) {
+            directionDistances.put(idx, 0);
+            return;
+        }
+
+        int neighborX = x + direction.xOffset;
+        int neighborY = y + direction.yOffset;
+
+        if (!grid.reachable(x, y, neighborX, neighborY)) {
+            directionDistances.put(idx, 0);
+        }
+        else if (grid.getForcedNeighborMask(neighborX, neighborY, direction) != 0 ||
+                (Direction.isDiagonal(direction.xOffset, direction.yOffset) &&
+                        (getDistance(neighborX, neighborY, direction.getXSubDirection()) > 0 ||
+                                getDistance(neighborX, neighborY, direction.getYSubDirection()) > 0))) {
+            // The neighbor is a jump point
+            directionDistances.put(idx, 1);
+        }
+        else {
+            int neighborDistance = directionDistances.get(neighborY * width + neighborX);
+            directionDistances.put(idx, neighborDistance > 0 ? neighborDistance + 1 : neighborDistance - 1);
+        }
+    }
+
+    /**
+     * @return Order-sensitive hash of all entries, for checking that runs with different parallelism agree
+     */
+    public long checksum() {
+        long checksum = 1;
+        for (IntBuffer directionDistances : distances) {
+            for (int idx = 0; idx < directionDistances.limit(); idx++) {
+                checksum = checksum * 31 + directionDistances.get(idx);
+            }
+        }
+        return checksum;
+    }
+}
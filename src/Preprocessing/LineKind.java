@@ -0,0 +1,71 @@
+package Preprocessing;
+
+/**
+ * LineKind: The families of lines a map is split into for preprocessing. Every cell lies on exactly one line of
+ * each family, so line tasks of the same family never write to the same cell
+ *
+ *   ROW:           y is constant, walked eastwards
+ *   COLUMN:        x is constant, walked northwards
+ *   DIAGONAL:      (x - y) is constant, walked north-eastwards
+ *   ANTI_DIAGONAL: (x + y) is constant, walked south-eastwards
+ */
+
+public enum LineKind {
+    ROW(1, 0),
+    COLUMN(0, 1),
+    DIAGONAL(1, 1),
+    ANTI_DIAGONAL(1, -1);
+
+    public final int xStep, yStep;
+
+    LineKind(int xStep, int yStep) {
+        this.xStep = xStep;
+        this.yStep = yStep;
+    }
+
+    public int getLineCount(int width, int height) {
+        switch (this) {
+            case ROW: return height;
+            case COLUMN: return width;
+            default: return width + height - 1;
+        }
+    }
+
+    /**
+     * @return x coordinate of the first cell of the given line
+     */
+    public int getStartX(int line, int width, int height) {
+        switch (this) {
+            case ROW: return 0;
+            case COLUMN: return line;
+            default: return line < height ? 0 : line - height + 1;
+        }
+    }
+
+    /**
+     * @return y coordinate of the first cell of the given line
+     */
+    public int getStartY(int line, int width, int height) {
+        switch (this) {
+            case ROW: return line;
+            case COLUMN: return 0;
+            case DIAGONAL: return line < height ? height - 1 - line : 0;
+            default: return line < height ? line : height - 1;
+        }
+    }
+
+    /**
+     * @return Number of cells on the given line
+     */
+    public int getLineLength(int line, int width, int height) {
+        switch (this) {
+            case ROW: return width;
+            case COLUMN: return height;
+            default:
+                int startX = getStartX(line, width, height);
+                int startY = getStartY(line, width, height);
+                int remainingY = yStep > 0 ? height - startY : startY + 1;
+                return Math.min(width - startX, remainingY);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package Preprocessing;
+
+import DataStructures.MapSnapshot;
+
+/**
+ * LineProcessor: Computes the part of a derived index lying on a single line of the map
+ *
+ * Note: Lines of the same phase are processed concurrently and in no particular order. Implementations must only
+ *       write the entries of the cells of their own line (reading anything computed by earlier phases is fine),
+ *       which keeps the output independent of the scheduling.
+ */
+
+public interface LineProcessor {
+    void processLine(MapSnapshot grid, LineKind kind, int line);
+}
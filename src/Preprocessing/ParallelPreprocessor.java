@@ -0,0 +1,119 @@
+package Preprocessing;
+
+import DataStructures.MapSnapshot;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ParallelPreprocessor: Runs the phases computing a derived map index as fork-join tasks over the lines of the map
+ *
+ * Phases run one after the other, each one on a single family of lines (see {@link LineKind}). The lines of a
+ * phase are split recursively until a task holds a handful of lines, then processed in parallel. Since every
+ * line writes its own cells only, the output does not depend on the number of threads.
+ *
+ * Usage:
+ *   new ParallelPreprocessor(ForkJoinPool.commonPool()).run(map.getSnapshot(),
+ *           new ParallelPreprocessor.Phase("rows", LineKind.ROW, rowProcessor),
+ *           new ParallelPreprocessor.Phase("columns", LineKind.COLUMN, columnProcessor));
+ */
+
+public class ParallelPreprocessor {
+
+    /** Number of tasks each phase is split into, per worker thread, to even out lines of different costs */
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final ForkJoinPool pool;
+    private ProgressListener progressListener;
+
+    public ParallelPreprocessor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ParallelPreprocessor setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Run the given phases on the given snapshot, returning once the last one is done
+     * @param grid
+     * @param phases
+     */
+    public void run(MapSnapshot grid, Phase... phases) {
+        long totalLines = 0;
+        for (Phase phase : phases) {
+            totalLines += phase.kind.getLineCount(grid.getWidth(), grid.getHeight());
+        }
+
+        AtomicLong completedLines = new AtomicLong();
+        for (Phase phase : phases) {
+            int lineCount = phase.kind.getLineCount(grid.getWidth(), grid.getHeight());
+            int grain = Math.max(1, lineCount / (pool.getParallelism() * TASKS_PER_THREAD));
+
+            pool.invoke(new LineTask(grid, phase, 0, lineCount, grain, completedLines, totalLines));
+        }
+    }
+
+    /**
+     * Phase: A step of the preprocessing, running the given processor over all lines of one family
+     */
+    public static class Phase {
+        final String name;
+        final LineKind kind;
+        final LineProcessor processor;
+
+        public Phase(String name, LineKind kind, LineProcessor processor) {
+            this.name = name;
+            this.kind = kind;
+            this.processor = processor;
+        }
+    }
+
+    /**
+     * LineTask: Processes the lines [fromLine, toLine) of a phase, forking halves until at most grain lines are left
+     */
+    @SuppressWarnings("serial")     // Never serialized
+    private class LineTask extends RecursiveAction {
+        private final MapSnapshot grid;
+        private final Phase phase;
+        private final int fromLine, toLine, grain;
+        private final AtomicLong completedLines;
+        private final long totalLines;
+
+        LineTask(MapSnapshot grid, Phase phase, int fromLine, int toLine, int grain,
+                 AtomicLong completedLines, long totalLines) {
+            this.grid = grid;
+            this.phase = phase;
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            this.grain = grain;
+            this.completedLines = completedLines;
+            this.totalLines = totalLines;
+        }
+
+        @Override
+        protected void compute() {
+            if (toLine - fromLine > grain) {
+                int middle = (fromLine + toLine) >>> 1;
+                invokeAll(new LineTask(grid, phase, fromLine, middle, grain, completedLines, totalLines),
+                        new LineTask(grid, phase, middle, toLine, grain, completedLines, totalLines));
+                return;
+            }
+
+            for (int line = fromLine; line < toLine; line++) {
+                phase.processor.processLine(grid, phase.kind, line);
+            }
+
+            long completed = completedLines.addAndGet(toLine - fromLine);
+            if (progressListener != null) {
+                progressListener.onProgress(phase.name, completed, totalLines);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Preprocessing;
+
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PreprocessingBenchmark: Measures how the computation of the derived indexes scales from 1 to N threads, and
+ * checks that every thread count produces the very same indexes
+ *
+ * Usage:
+ *   java Preprocessing.PreprocessingBenchmark [--map <map file> | --size 4096 --density 0.3] [--threads 16]
+ *        [--rounds 3] [--seed 1]
+ *
+ * Without a map file, a random map of size x size cells is generated (4096 x 4096 is a 16M-cell map).
+ */
+
+public class PreprocessingBenchmark {
+
+    public static void main(String[] args) {
+        String mapFile = null;
+        int size = 2048, rounds = 3;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        double density = 0.3;
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--map": mapFile = args[++i]; break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--density": density = Double.parseDouble(args[++i]); break;
+                case "--threads": maxThreads = Integer.parseInt(args[++i]); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        MapSnapshot grid = mapFile != null
+                ? Map.initMap(mapFile).getSnapshot()
+                : generateMap(size, size, density, seed);
+        System.out.println("Map: " + grid.getWidth() + " x " + grid.getHeight() + " cells");
+
+        // Progress of a first (warm-up) run on the common pool
+        ParallelPreprocessor warmUp = new ParallelPreprocessor(ForkJoinPool.commonPool())
+                .setProgressListener(new ProgressListener() {
+                    private int lastQuarter = -1;
+
+                    @Override
+                    public synchronized void onProgress(String phase, long completedLines, long totalLines) {
+                        int percentage = (int) (completedLines * 100 / totalLines);
+                        if (percentage / 25 != lastQuarter) {
+                            lastQuarter = percentage / 25;
+                            System.out.println("  " + percentage + "% (" + phase + ")");
+                        }
+                    }
+                });
+        JumpDistanceIndex.compute(grid, warmUp);
+        ComponentIndex.compute(grid, warmUp);
+
+        double baseline = 0;
+        long referenceChecksum = 0;
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelPreprocessor preprocessor = new ParallelPreprocessor(pool);
+
+            long best = Long.MAX_VALUE;
+            long checksum = 0;
+            int components = 0;
+            for (int round = 0; round < rounds; round++) {
+                long begin = System.nanoTime();
+                JumpDistanceIndex jumpDistances = JumpDistanceIndex.compute(grid, preprocessor);
+                ComponentIndex componentIndex = ComponentIndex.compute(grid, preprocessor);
+                best = Math.min(best, System.nanoTime() - begin);
+
+                checksum = jumpDistances.checksum() * 31 + componentIndex.checksum();
+                components = componentIndex.getComponentCount();
+            }
+            pool.shutdown();
+
+            double millis = best / 1e6;
+            if (threads == 1) {
+                baseline = millis;
+                referenceChecksum = checksum;
+            }
+
+            System.out.println(String.format("Threads: %2d, time: %8.1f ms, speedup: %5.2f, components: %d%s",
+                    threads, millis, baseline / millis, components,
+                    checksum == referenceChecksum ? "" : "  OUTPUT DIFFERS FROM SINGLE-THREADED RUN!"));
+
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Generate a map with obstacles scattered at random
+     */
+    public static MapSnapshot generateMap(int width, int height, double density, long seed) {
+        Random random = new Random(seed);
+        MapSnapshot.Builder builder = new MapSnapshot.Builder(width, height);
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (random.nextDouble() < density) {
+                    builder.setObstacle(x, y, true);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+}
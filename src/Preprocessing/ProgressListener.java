@@ -0,0 +1,16 @@
+package Preprocessing;
+
+/**
+ * ProgressListener: Receives the progress of a preprocessing run
+ *
+ * Note: Called from the worker threads, implementations must be thread-safe
+ */
+
+public interface ProgressListener {
+    /**
+     * @param phase Name of the running phase
+     * @param completedLines Number of lines processed so far, over all phases of the run
+     * @param totalLines Number of lines of all phases of the run
+     */
+    void onProgress(String phase, long completedLines, long totalLines);
+}
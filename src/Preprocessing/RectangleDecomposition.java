@@ -0,0 +1,230 @@
+package Preprocessing;
+
+import DataStructures.MapSnapshot;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * RectangleDecomposition: Splits the walkable area of a map into empty rectangles, for Rectangular Symmetry
+ * Reduction (RSR)
+ *
+ * Cells are scanned row by row from the bottom-left corner. Every walkable cell not yet covered becomes the
+ * bottom-left corner of a new rectangle, grown either row-first (as wide as possible, then as high as possible)
+ * or column-first, whichever covers more cells. The decomposition is greedy, not minimal, but every rectangle is
+ * maximal in the direction it was grown first.
+ *
+ * Reference: Daniel Harabor, Adi Botea, Philip Kilby, "Path Symmetries in Undirected Uniform-cost Grids" (SARA 2011)
+ */
+
+public class RectangleDecomposition {
+    /** Rectangle of the obstacles */
+    public static final int NO_RECTANGLE = -1;
+
+    private final MapSnapshot grid;
+    private final int width, height;
+    /** Either arrays or sections of an {@link IndexSnapshot} file */
+    private final IntBuffer rectangleIds;   // By y * width + x
+    private final IntBuffer bounds;         // minX, minY, maxX, maxY of every rectangle
+    private final int rectangleCount;
+
+    RectangleDecomposition(MapSnapshot grid, IntBuffer rectangleIds, IntBuffer bounds, int rectangleCount) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.rectangleIds = rectangleIds;
+        this.bounds = bounds;
+        this.rectangleCount = rectangleCount;
+    }
+
+    public static RectangleDecomposition compute(MapSnapshot grid) {
+        Builder builder = new Builder(grid);
+
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
+                if (builder.isFree(x, y)) {
+                    builder.addLargestRectangle(x, y);
+                }
+            }
+        }
+
+        return new RectangleDecomposition(grid, IntBuffer.wrap(builder.rectangleIds),
+                IntBuffer.wrap(Arrays.copyOf(builder.bounds, builder.rectangleCount * 4)), builder.rectangleCount);
+    }
+
+    /** State of the scan of {@link #compute} */
+    private static class Builder {
+        final MapSnapshot grid;
+        final int width;
+        final int[] rectangleIds;
+        int[] bounds = new int[64];
+        int rectangleCount = 0;
+
+        Builder(MapSnapshot grid) {
+            this.grid = grid;
+            this.width = grid.getWidth();
+            this.rectangleIds = new int[width * grid.getHeight()];
+            Arrays.fill(rectangleIds, NO_RECTANGLE);
+        }
+
+        /**
+         * Check if the given position is walkable and not covered by a rectangle yet
+         */
+        boolean isFree(int x, int y) {
+            return grid.isPositionWalkable(x, y) && rectangleIds[y * width + x] == NO_RECTANGLE;
+        }
+
+        void addLargestRectangle(int x, int y) {
+            // Row first
+            int rowFirstMaxX = x;
+            while (isFree(rowFirstMaxX + 1, y)) {
+                rowFirstMaxX++;
+            }
+            int rowFirstMaxY = y;
+            while (isRowFree(x, rowFirstMaxX, rowFirstMaxY + 1)) {
+                rowFirstMaxY++;
+            }
+
+            // Column first
+            int columnFirstMaxY = y;
+            while (isFree(x, columnFirstMaxY + 1)) {
+                columnFirstMaxY++;
+            }
+            int columnFirstMaxX = x;
+            while (isColumnFree(columnFirstMaxX + 1, y, columnFirstMaxY)) {
+                columnFirstMaxX++;
+            }
+
+            long rowFirstArea = (long) (rowFirstMaxX - x + 1) * (rowFirstMaxY - y + 1);
+            long columnFirstArea = (long) (columnFirstMaxX - x + 1) * (columnFirstMaxY - y + 1);
+            int maxX = rowFirstArea >= columnFirstArea ? rowFirstMaxX : columnFirstMaxX;
+            int maxY = rowFirstArea >= columnFirstArea ? rowFirstMaxY : columnFirstMaxY;
+
+            if (rectangleCount * 4 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            int id = rectangleCount++;
+            bounds[id * 4] = x;
+            bounds[id * 4 + 1] = y;
+            bounds[id * 4 + 2] = maxX;
+            bounds[id * 4 + 3] = maxY;
+
+            for (int cellY = y; cellY <= maxY; cellY++) {
+                Arrays.fill(rectangleIds, cellY * width + x, cellY * width + maxX + 1, id);
+            }
+        }
+
+        boolean isRowFree(int minX, int maxX, int y) {
+            for (int x = minX; x <= maxX; x++) {
+                if (!isFree(x, y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean isColumnFree(int x, int minY, int maxY) {
+            for (int y = minY; y <= maxY; y++) {
+                if (!isFree(x, y)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** ---------- Accessors ---------- */
+
+    /**
+     * @param x
+     * @param y
+     * @return Id of the rectangle covering the given position, or NO_RECTANGLE for obstacles & positions outside
+     *         the map
+     */
+    public int getRectangle(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return NO_RECTANGLE;
+        }
+        return rectangleIds.get(y * width + x);
+    }
+
+    /**
+     * Check if the given position lies strictly inside its rectangle, i.e. not on its perimeter
+     */
+    public boolean isInterior(int x, int y) {
+        int rectangle = getRectangle(x, y);
+        return rectangle != NO_RECTANGLE && x > getMinX(rectangle) && x < getMaxX(rectangle) &&
+                y > getMinY(rectangle) && y < getMaxY(rectangle);
+    }
+
+    public int getMinX(int rectangle) {
+        return bounds.get(rectangle * 4);
+    }
+
+    public int getMinY(int rectangle) {
+        return bounds.get(rectangle * 4 + 1);
+    }
+
+    public int getMaxX(int rectangle) {
+        return bounds.get(rectangle * 4 + 2);
+    }
+
+    public int getMaxY(int rectangle) {
+        return bounds.get(rectangle * 4 + 3);
+    }
+
+    public int getRectangleCount() {
+        return rectangleCount;
+    }
+
+    /**
+     * @return Number of walkable cells on the perimeter of their rectangle, the only ones a search expands
+     */
+    public long getPerimeterCellCount() {
+        long count = 0;
+        for (int id = 0; id < rectangleCount; id++) {
+            long rectangleWidth = getMaxX(id) - getMinX(id) + 1, rectangleHeight = getMaxY(id) - getMinY(id) + 1;
+            count += rectangleWidth * rectangleHeight - Math.max(0, rectangleWidth - 2) * Math.max(0, rectangleHeight - 2);
+        }
+        return count;
+    }
+
+    public long getWalkableCellCount() {
+        long count = 0;
+        for (int id = 0; id < rectangleCount; id++) {
+            count += (long) (getMaxX(id) - getMinX(id) + 1) * (getMaxY(id) - getMinY(id) + 1);
+        }
+        return count;
+    }
+
+    /**
+     * @return The snapshot the decomposition was computed on
+     */
+    public MapSnapshot getSnapshot() {
+        return grid;
+    }
+
+    /**
+     * @return Order-sensitive hash of the decomposition
+     */
+    public long checksum() {
+        long checksum = 1;
+        for (int idx = 0; idx < rectangleIds.limit(); idx++) {
+            checksum = checksum * 31 + rectangleIds.get(idx);
+        }
+        for (int idx = 0; idx < bounds.limit(); idx++) {
+            checksum = checksum * 31 + bounds.get(idx);
+        }
+        return checksum;
+    }
+
+    /** ---------- Storage, for {@link IndexSnapshot} ---------- */
+
+    IntBuffer getRectangleIds() {
+        return rectangleIds.asReadOnlyBuffer();
+    }
+
+    IntBuffer getBounds() {
+        return bounds.asReadOnlyBuffer();
+    }
+}
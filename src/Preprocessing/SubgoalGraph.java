@@ -0,0 +1,400 @@
+package Preprocessing;
+
+import DataStructures.Cell;
+import DataStructures.Direction;
+import DataStructures.MapSnapshot;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * SubgoalGraph: Simple subgoal graph of a map, i.e. the cells at obstacle corners linked to the ones they reach
+ * in a straight-ish line, so that a query only searches this (much smaller) graph
+ *
+ * Definitions:
+ *   - A subgoal is a walkable cell having a forced neighbor in some direction (see
+ *     {@link MapSnapshot#getForcedNeighborMask}), i.e. a cell where a shortest path may have to turn around an
+ *     obstacle, with the corner-cutting rules of {@link MapSnapshot#reachable}
+ *   - A cell t is h-reachable from s if a path of octile length octile(s, t) exists between them. Such a path only
+ *     uses two moves: the diagonal one towards t and the straight one along the major axis of (t - s)
+ *   - t is direct-h-reachable from s if such a path exists without going through another subgoal
+ * Subgoals are linked to their direct-h-reachable subgoals (the relation is symmetric). Any shortest path then has
+ * the same cost as a path through subgoals only, whose consecutive subgoals are h-reachable.
+ *
+ * The graph is computed by rows with a {@link ParallelPreprocessor}: subgoals first, then their ids (in row-major
+ * order, whatever the number of threads), then their edges. The edges are then packed in compressed sparse row
+ * form: the edges of subgoal i are edgeTargets[edgeOffsets[i] .. edgeOffsets[i + 1]).
+ *
+ * Reference: Tansel Uras, Sven Koenig, Carlos Hernandez, "Subgoal Graphs for Optimal Pathfinding in Eight-Neighbor
+ *            Grids" (ICAPS 2013)
+ */
+
+public class SubgoalGraph {
+    /** Id of the cells that are not subgoals */
+    public static final int NO_SUBGOAL = -1;
+
+    /** Visits the cells met while scanning the h-reachable area of a position */
+    public interface CellVisitor {
+        /**
+         * @return false to stop the scan from going past the given cell
+         */
+        boolean visit(int x, int y);
+    }
+
+    private final MapSnapshot grid;
+    private final int width, height;
+    /** Either arrays or sections of an {@link IndexSnapshot} file */
+    private final IntBuffer subgoalIds;     // By y * width + x
+    private final IntBuffer subgoalXs, subgoalYs;
+    private IntBuffer edgeOffsets, edgeTargets;
+
+    SubgoalGraph(MapSnapshot grid, IntBuffer subgoalIds, IntBuffer subgoalXs, IntBuffer subgoalYs,
+                 IntBuffer edgeOffsets, IntBuffer edgeTargets) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.subgoalIds = subgoalIds;
+        this.subgoalXs = subgoalXs;
+        this.subgoalYs = subgoalYs;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+    }
+
+    public static SubgoalGraph compute(MapSnapshot grid, ParallelPreprocessor preprocessor) {
+        int width = grid.getWidth(), height = grid.getHeight();
+        int[] subgoalIds = new int[width * height];
+        int[] rowOffsets = new int[height + 1];
+
+        preprocessor.run(grid, new ParallelPreprocessor.Phase("subgoals", LineKind.ROW, (g, kind, y) -> {
+            int count = 0;
+            for (int x = 0; x < width; x++) {
+                boolean isSubgoal = isSubgoal(g, x, y);
+                subgoalIds[y * width + x] = isSubgoal ? 0 : NO_SUBGOAL;
+                count += isSubgoal ? 1 : 0;
+            }
+            rowOffsets[y + 1] = count;
+        }));
+
+        for (int y = 0; y < height; y++) {
+            rowOffsets[y + 1] += rowOffsets[y];
+        }
+        int subgoalCount = rowOffsets[height];
+        int[] subgoalXs = new int[subgoalCount];
+        int[] subgoalYs = new int[subgoalCount];
+        int[][] edges = new int[subgoalCount][];
+
+        // The edges are only known once the graph can look up subgoal ids
+        SubgoalGraph graph = new SubgoalGraph(grid, IntBuffer.wrap(subgoalIds), IntBuffer.wrap(subgoalXs),
+                IntBuffer.wrap(subgoalYs), null, null);
+
+        preprocessor.run(grid,
+                new ParallelPreprocessor.Phase("subgoal ids", LineKind.ROW, (g, kind, y) -> {
+                    int id = rowOffsets[y];
+                    for (int idx = y * width; idx < (y + 1) * width; idx++) {
+                        if (subgoalIds[idx] != NO_SUBGOAL) {
+                            subgoalIds[idx] = id;
+                            subgoalXs[id] = idx - y * width;
+                            subgoalYs[id] = y;
+                            id++;
+                        }
+                    }
+                }),
+                new ParallelPreprocessor.Phase("subgoal edges", LineKind.ROW, (g, kind, y) -> {
+                    for (int id = rowOffsets[y]; id < rowOffsets[y + 1]; id++) {
+                        edges[id] = graph.getDirectHReachable(subgoalXs[id], subgoalYs[id]);
+                    }
+                }));
+
+        int[] edgeOffsets = new int[subgoalCount + 1];
+        for (int id = 0; id < subgoalCount; id++) {
+            edgeOffsets[id + 1] = edgeOffsets[id] + edges[id].length;
+        }
+        int[] edgeTargets = new int[edgeOffsets[subgoalCount]];
+        for (int id = 0; id < subgoalCount; id++) {
+            System.arraycopy(edges[id], 0, edgeTargets, edgeOffsets[id], edges[id].length);
+        }
+
+        graph.edgeOffsets = IntBuffer.wrap(edgeOffsets);
+        graph.edgeTargets = IntBuffer.wrap(edgeTargets);
+        return graph;
+    }
+
+    /**
+     * Check if the given position is a subgoal of the given snapshot (see the description of the class)
+     */
+    public static boolean isSubgoal(MapSnapshot grid, int x, int y) {
+        if (!grid.isPositionWalkable(x, y)) {
+            return false;
+        }
+        for (Direction direction : Direction.values()) {
+            if (grid.getForcedNeighborMask(x, y, direction) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtain the subgoals direct-h-reachable from the given position, which does not need to be a subgoal
+     * @param x
+     * @param y
+     * @return Ids of the subgoals, in increasing order
+     */
+    public int[] getDirectHReachable(int x, int y) {
+        List<Integer> reached = new ArrayList<>();
+
+        scanHReachable(grid, x, y, (cellX, cellY) -> {
+            int id = subgoalIds.get(cellY * width + cellX);
+            if (id == NO_SUBGOAL) {
+                return true;
+            }
+            reached.add(id);
+            return false;
+        });
+
+        // Straight lines & diagonals belong to two octants each
+        Collections.sort(reached);
+        return reached.stream().distinct().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Visit the cells h-reachable from the given position, octant by octant. Cells are visited once per octant
+     * they belong to, the ones on straight lines & diagonals from the position thus twice
+     * @param grid
+     * @param x
+     * @param y
+     * @param visitor
+     */
+    public static void scanHReachable(MapSnapshot grid, int x, int y, CellVisitor visitor) {
+        for (int quadrantX = -1; quadrantX <= 1; quadrantX += 2) {
+            for (int quadrantY = -1; quadrantY <= 1; quadrantY += 2) {
+                scanOctant(grid, x, y, quadrantX, quadrantY, true, visitor);
+                scanOctant(grid, x, y, quadrantX, quadrantY, false, visitor);
+            }
+        }
+    }
+
+    /**
+     * Scan the cells (major, minor) with 0 <= minor <= major of an octant, where major counts the steps along the
+     * major axis and minor the steps along the other one. A cell is h-reachable if it is reached by a straight move
+     * from (major - 1, minor) or a diagonal move from (major - 1, minor - 1), from an h-reachable cell
+     */
+    private static void scanOctant(MapSnapshot grid, int x, int y, int quadrantX, int quadrantY, boolean isMajorX,
+                                   CellVisitor visitor) {
+        int majorLimit = isMajorX ? grid.getWidth() : grid.getHeight();
+        boolean[] previous = {true};                // Column major - 1, only the origin in the first place
+
+        for (int major = 1; major < majorLimit; major++) {
+            boolean[] current = new boolean[major + 1];
+            boolean isAnyReached = false;
+
+            for (int minor = 0; minor <= major; minor++) {
+                boolean isFromStraight = minor < major && previous[minor];
+                boolean isFromDiagonal = minor > 0 && previous[minor - 1];
+                if (!isFromStraight && !isFromDiagonal) {
+                    continue;
+                }
+
+                int cellX = x + quadrantX * (isMajorX ? major : minor);
+                int cellY = y + quadrantY * (isMajorX ? minor : major);
+                boolean isReached =
+                        (isFromStraight && grid.reachable(cellX - quadrantX * (isMajorX ? 1 : 0),
+                                cellY - quadrantY * (isMajorX ? 0 : 1), cellX, cellY)) ||
+                        (isFromDiagonal && grid.reachable(cellX - quadrantX, cellY - quadrantY, cellX, cellY));
+
+                if (isReached && visitor.visit(cellX, cellY)) {
+                    current[minor] = true;
+                    isAnyReached = true;
+                }
+            }
+
+            if (!isAnyReached) {
+                return;
+            }
+            previous = current;
+        }
+    }
+
+    /**
+     * Obtain a path of octile length between two positions, the second one being h-reachable from the first one
+     * @param fromX
+     * @param fromY
+     * @param toX
+     * @param toY
+     * @return Turning points of the path (first position excluded), or null if the second position is not
+     *         h-reachable from the first one
+     */
+    public static List<Cell> getHPath(MapSnapshot grid, int fromX, int fromY, int toX, int toY) {
+        int quadrantX = toX >= fromX ? 1 : -1;
+        int quadrantY = toY >= fromY ? 1 : -1;
+        boolean isMajorX = Math.abs(toX - fromX) >= Math.abs(toY - fromY);
+        int majorLength = isMajorX ? Math.abs(toX - fromX) : Math.abs(toY - fromY);
+        int minorLength = isMajorX ? Math.abs(toY - fromY) : Math.abs(toX - fromX);
+
+        // reached[major][minor], restricted to the parallelogram of the cells from which the target is h-reachable
+        boolean[][] reached = new boolean[majorLength + 1][minorLength + 1];
+        reached[0][0] = true;
+
+        for (int major = 1; major <= majorLength; major++) {
+            int minMinor = Math.max(0, minorLength - (majorLength - major));
+            for (int minor = minMinor; minor <= Math.min(major, minorLength); minor++) {
+                int cellX = fromX + quadrantX * (isMajorX ? major : minor);
+                int cellY = fromY + quadrantY * (isMajorX ? minor : major);
+
+                reached[major][minor] =
+                        (minor < major && reached[major - 1][minor] && grid.reachable(
+                                cellX - quadrantX * (isMajorX ? 1 : 0), cellY - quadrantY * (isMajorX ? 0 : 1),
+                                cellX, cellY)) ||
+                        (minor > 0 && reached[major - 1][minor - 1] &&
+                                grid.reachable(cellX - quadrantX, cellY - quadrantY, cellX, cellY));
+            }
+        }
+        if (!reached[majorLength][minorLength]) {
+            return null;
+        }
+
+        // Walk back from the target, keeping the same move for as long as possible
+        LinkedList<Cell> path = new LinkedList<>();
+        path.addFirst(new Cell(toX, toY));
+        int major = majorLength, minor = minorLength;
+        Boolean wasDiagonal = null;
+
+        while (major > 0) {
+            boolean canMoveDiagonally = minor > 0 && reached[major - 1][minor - 1] &&
+                    isStepValid(grid, fromX, fromY, quadrantX, quadrantY, isMajorX, major, minor, true);
+            boolean canMoveStraight = minor < major && reached[major - 1][minor] &&
+                    isStepValid(grid, fromX, fromY, quadrantX, quadrantY, isMajorX, major, minor, false);
+            boolean isDiagonal = wasDiagonal == null || wasDiagonal ? canMoveDiagonally : !canMoveStraight;
+
+            if (wasDiagonal != null && isDiagonal != wasDiagonal) {
+                path.addFirst(new Cell(fromX + quadrantX * (isMajorX ? major : minor),
+                        fromY + quadrantY * (isMajorX ? minor : major)));
+            }
+            wasDiagonal = isDiagonal;
+
+            major--;
+            minor -= isDiagonal ? 1 : 0;
+        }
+
+        return path;
+    }
+
+    /**
+     * Check the move reaching the cell (major, minor) of an octant, diagonally or along the major axis
+     */
+    private static boolean isStepValid(MapSnapshot grid, int fromX, int fromY, int quadrantX, int quadrantY,
+                                       boolean isMajorX, int major, int minor, boolean isDiagonal) {
+        int cellX = fromX + quadrantX * (isMajorX ? major : minor);
+        int cellY = fromY + quadrantY * (isMajorX ? minor : major);
+        int prevX = cellX - quadrantX * (isMajorX || isDiagonal ? 1 : 0);
+        int prevY = cellY - quadrantY * (!isMajorX || isDiagonal ? 1 : 0);
+
+        return grid.reachable(prevX, prevY, cellX, cellY);
+    }
+
+    /** ---------- Accessors ---------- */
+
+    /**
+     * @param x
+     * @param y
+     * @return Id of the subgoal at the given position, or NO_SUBGOAL
+     */
+    public int getSubgoal(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return NO_SUBGOAL;
+        }
+        return subgoalIds.get(y * width + x);
+    }
+
+    public int getX(int subgoal) {
+        return subgoalXs.get(subgoal);
+    }
+
+    public int getY(int subgoal) {
+        return subgoalYs.get(subgoal);
+    }
+
+    /**
+     * @param subgoal
+     * @return Number of direct-h-reachable subgoals of the given subgoal
+     */
+    public int getDegree(int subgoal) {
+        return edgeOffsets.get(subgoal + 1) - edgeOffsets.get(subgoal);
+    }
+
+    /**
+     * @param subgoal
+     * @param i Between 0 & getDegree(subgoal) - 1
+     * @return Id of the i-th direct-h-reachable subgoal of the given subgoal, in increasing order of ids
+     */
+    public int getEdge(int subgoal, int i) {
+        return edgeTargets.get(edgeOffsets.get(subgoal) + i);
+    }
+
+    /**
+     * @param subgoal
+     * @return Ids of the direct-h-reachable subgoals, in increasing order (a copy, see {@link #getEdge} for
+     *         iterating without allocating)
+     */
+    public int[] getEdges(int subgoal) {
+        int[] edges = new int[getDegree(subgoal)];
+        edgeTargets.get(edgeOffsets.get(subgoal), edges);
+        return edges;
+    }
+
+    public int getSubgoalCount() {
+        return subgoalXs.limit();
+    }
+
+    public long getEdgeCount() {
+        return edgeTargets.limit() / 2;
+    }
+
+    /**
+     * @return The snapshot the graph was computed on
+     */
+    public MapSnapshot getSnapshot() {
+        return grid;
+    }
+
+    /**
+     * @return Order-sensitive hash of the graph, for checking that runs with different parallelism agree
+     */
+    public long checksum() {
+        long checksum = 1;
+        for (int subgoal = 0; subgoal < getSubgoalCount(); subgoal++) {
+            // Same as Arrays.hashCode(getEdges(subgoal))
+            int edgesHash = 1;
+            for (int i = 0; i < getDegree(subgoal); i++) {
+                edgesHash = edgesHash * 31 + getEdge(subgoal, i);
+            }
+            checksum = checksum * 31 + edgesHash;
+        }
+        return checksum;
+    }
+
+    /** ---------- Storage, for {@link IndexSnapshot} ---------- */
+
+    IntBuffer getSubgoalIds() {
+        return subgoalIds.asReadOnlyBuffer();
+    }
+
+    IntBuffer getSubgoalXs() {
+        return subgoalXs.asReadOnlyBuffer();
+    }
+
+    IntBuffer getSubgoalYs() {
+        return subgoalYs.asReadOnlyBuffer();
+    }
+
+    IntBuffer getEdgeOffsets() {
+        return edgeOffsets.asReadOnlyBuffer();
+    }
+
+    IntBuffer getEdgeTargets() {
+        return edgeTargets.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,172 @@
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Engine.PathFindingEngine;
+import Engine.PathResult;
+import Engine.RectangleSymmetryEngine;
+import Preprocessing.PreprocessingBenchmark;
+import Preprocessing.RectangleDecomposition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * RectangleSymmetryStatistics: Reports per map how Rectangular Symmetry Reduction decomposes it, and how many
+ * expansions & how much time it saves compared with plain JumpPointSearch on the same random queries
+ *
+ * Usage:
+ *   java RectangleSymmetryStatistics [--map <map file>]... [--open-field <size>]... [--random <size>]...
+ *        [--blocks 40] [--density 0.2] [--queries 200] [--seed 1]
+ *
+ * Every option may be repeated, one line of statistics is printed per map. --open-field generates a size x size
+ * map with a few (--blocks) rectangular obstacles, where RSR shines; --random a map with scattered obstacles of
+ * the given density, where the rectangles are tiny and RSR barely prunes anything. Without any map, one of each
+ * 512 x 512 is generated.
+ *
+ * JumpPointSearch counts the jump points it expands, RSR the perimeter nodes: on open maps RSR may expand more
+ * nodes yet answer much faster, since it never scans the empty stretches between them.
+ */
+
+public class RectangleSymmetryStatistics {
+
+    public static void main(String[] args) {
+        List<String> names = new ArrayList<>();
+        List<Map> maps = new ArrayList<>();
+        int blocks = 40, queryCount = 200;
+        double density = 0.2;
+        long seed = 1;
+
+        List<String[]> mapSpecs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--map":
+                case "--open-field":
+                case "--random": mapSpecs.add(new String[] {args[i], args[++i]}); break;
+                case "--blocks": blocks = Integer.parseInt(args[++i]); break;
+                case "--density": density = Double.parseDouble(args[++i]); break;
+                case "--queries": queryCount = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (mapSpecs.isEmpty()) {
+            mapSpecs.add(new String[] {"--open-field", "512"});
+            mapSpecs.add(new String[] {"--random", "512"});
+        }
+
+        for (String[] mapSpec : mapSpecs) {
+            if (mapSpec[0].equals("--map")) {
+                names.add(mapSpec[1]);
+                maps.add(Map.initMap(mapSpec[1]));
+                continue;
+            }
+
+            int size = Integer.parseInt(mapSpec[1]);
+            MapSnapshot generated = mapSpec[0].equals("--open-field")
+                    ? generateOpenField(size, blocks, seed)
+                    : PreprocessingBenchmark.generateMap(size, size, density, seed);
+            Map map = Map.initMap(size, size);
+            map.edit(snapshot -> generated);
+            names.add(mapSpec[0].substring(2) + " " + size);
+            maps.add(map);
+        }
+
+        System.out.println(String.format("%-28s %10s %10s %9s %9s | %12s %12s %7s | %9s %9s %7s | %s", "Map",
+                "Walkable", "Rects", "Perim %", "Build ms", "JPS exp", "RSR exp", "Ratio", "JPS ms", "RSR ms",
+                "Speedup", "RSR longer / shorter"));
+
+        for (int i = 0; i < maps.size(); i++) {
+            report(names.get(i), maps.get(i), queryCount, new Random(seed));
+        }
+    }
+
+    private static void report(String name, Map map, int queryCount, Random random) {
+        long begin = System.nanoTime();
+        RectangleSymmetryEngine rsr = new RectangleSymmetryEngine(map);
+        double buildMillis = (System.nanoTime() - begin) / 1e6;
+        PathFindingEngine jps = EngineFactory.create(EngineFactory.DEFAULT_ENGINE, map);
+        RectangleDecomposition rectangles = rsr.getDecomposition();
+
+        // Random pairs of walkable positions
+        List<Cell[]> queries = new ArrayList<>();
+        while (queries.size() < queryCount && rectangles.getWalkableCellCount() > 0) {
+            Cell startPos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            Cell goalPos = new Cell(random.nextInt(map.getWidth()), random.nextInt(map.getHeight()));
+            if (map.isPositionWalkable(startPos.x, startPos.y) && map.isPositionWalkable(goalPos.x, goalPos.y)) {
+                queries.add(new Cell[] {startPos, goalPos});
+            }
+        }
+
+        // One warm-up pass, then the measured one
+        run(jps, queries, null);
+        run(rsr, queries, null);
+        long[] jpsTotals = new long[2], rsrTotals = new long[2];
+        List<Double> jpsCosts = run(jps, queries, jpsTotals);
+        List<Double> rsrCosts = run(rsr, queries, rsrTotals);
+
+        // RSR is optimal, JumpPointSearch may settle for a slightly longer path now and then
+        int longer = 0, shorter = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            double difference = rsrCosts.get(i) - jpsCosts.get(i);
+            if (difference > 1e-3) {
+                longer++;
+            } else if (difference < -1e-3) {
+                shorter++;
+            }
+        }
+
+        long walkable = rectangles.getWalkableCellCount();
+        System.out.println(String.format(
+                "%-28s %10d %10d %8.1f%% %9.1f | %12d %12d %7.2f | %9.1f %9.1f %7.2f | %d / %d", name, walkable, rectangles.getRectangleCount(),
+                walkable == 0 ? 0 : 100.0 * rectangles.getPerimeterCellCount() / walkable, buildMillis,
+                jpsTotals[0], rsrTotals[0], rsrTotals[0] == 0 ? 0 : (double) jpsTotals[0] / rsrTotals[0],
+                jpsTotals[1] / 1e6, rsrTotals[1] / 1e6,
+                rsrTotals[1] == 0 ? 0 : (double) jpsTotals[1] / rsrTotals[1], longer, shorter));
+    }
+
+    /**
+     * Run all queries with the given engine
+     * @param totals If not null, receives the total number of expansions & the total time in nanoseconds
+     * @return Path cost of every query, -1 if no path was found
+     */
+    private static List<Double> run(PathFindingEngine engine, List<Cell[]> queries, long[] totals) {
+        List<Double> costs = new ArrayList<>(queries.size());
+        long expansions = 0;
+
+        long begin = System.nanoTime();
+        for (Cell[] query : queries) {
+            PathResult result = engine.query(query[0], query[1]);
+            expansions += Math.max(0, result.expansions);
+            boolean isFound = !result.path.isEmpty() || query[0].equals(query[1]);
+            costs.add(isFound ? PathFindingEngine.getPathCost(query[0], result.path) : -1);
+        }
+
+        if (totals != null) {
+            totals[0] = expansions;
+            totals[1] = System.nanoTime() - begin;
+        }
+        return costs;
+    }
+
+    /**
+     * Generate an open map of size x size cells, with the given number of random rectangular obstacles
+     */
+    private static MapSnapshot generateOpenField(int size, int blocks, long seed) {
+        Random random = new Random(seed);
+        MapSnapshot.Builder builder = new MapSnapshot.Builder(size, size);
+        int maxBlockSize = Math.max(1, size / 10);
+
+        for (int block = 0; block < blocks; block++) {
+            int blockWidth = 1 + random.nextInt(maxBlockSize), blockHeight = 1 + random.nextInt(maxBlockSize);
+            int minX = random.nextInt(size), minY = random.nextInt(size);
+            for (int y = minY; y < Math.min(size, minY + blockHeight); y++) {
+                for (int x = minX; x < Math.min(size, minX + blockWidth); x++) {
+                    builder.setObstacle(x, y, true);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,400 @@
+package Replanning;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import DataStructures.RadixHeap;
+import Engine.PathResult;
+import HeuristicStrategy.FixedPointOctileDistance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * AdaptivePathPlanner: Incremental path planning for an agent that keeps replanning while it moves, its target
+ * moves, and the map is edited (Generalized Adaptive A*)
+ *
+ * Every search is an A* over the 8-connected grid (moves of {@link MapSnapshot#reachable}, costs in the
+ * fixed-point units of {@link FixedPointOctileDistance}), and every search leaves the planner wiser:
+ *   1) After a search reaching the goal at cost G, every expanded cell s learns h(s) = G - g(s), which is a better
+ *      (yet still consistent) estimate than the octile distance. Later searches towards the same goal expand
+ *      fewer cells, whatever the starting point
+ *   2) When the goal moves, the learned values are corrected lazily: h(s) = max(octile(s, goal), h(s) - h(goal)),
+ *      h(goal) being the estimate of the new goal towards the old one
+ *   3) Edits of the map are found by diffing snapshots. New obstacles only make paths longer, the learned values
+ *      stay consistent. Freed cells can make them too high, so they are lowered by a Dijkstra-like propagation
+ *      starting around the freed cells, which only visits the learned values that actually decrease
+ *   4) If the goal did not move, no cell was freed and the previous path is still walkable from the new starting
+ *      point, its remainder is returned without any search
+ *
+ * Note: A planner holds the state of a single agent and is not thread-safe. Use one planner per agent.
+ *       The learned values take 20 bytes per cell of the map, whatever the length of the session.
+ *
+ * Reference: Xiaoxun Sun, Sven Koenig, William Yeoh, "Generalized Adaptive A*" (AAMAS 2008)
+ */
+
+public class AdaptivePathPlanner {
+    private static final int[][] MOVES = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private final Map map;
+
+    /** Snapshot of the last replan, the learned values are consistent with it */
+    private MapSnapshot grid;
+    private Cell goal;
+
+    /** Learned h-values, by y * width + x, along with the value of goalShift when they were learned */
+    private long[] learnedH = new long[0];
+    private long[] learnedGoalShifts = new long[0];
+    /** The learned values are those of the cells stamped with learnedStamp, so that a reset takes O(1) */
+    private int[] learnedStamps = new int[0];
+    private int learnedStamp = 1;
+    private int learnedValueCount = 0;
+    /** Sum of the goal shift corrections applied so far (see getH) */
+    private long goalShift = 0;
+
+    /** Cells of the previous path, starting point included, and their positions on it */
+    private List<Integer> previousPath;
+    private java.util.Map<Integer, Integer> previousPathPositions;
+
+    private boolean isLastPathReused = false;
+    private long lastRepairedValues = 0;
+
+    /** Search state of a cell during a single replan */
+    private static class Node {
+        final int idx;
+        long g = Long.MAX_VALUE;
+        long h = -1;
+        Node parent;
+        boolean isClosed = false;
+
+        Node(int idx) {
+            this.idx = idx;
+        }
+    }
+
+    public AdaptivePathPlanner(Map map) {
+        this.map = map;
+    }
+
+    /**
+     * Finding the minimum-cost path from the given starting point to the given goal, reusing whatever the
+     * previous replans learned
+     * @param startPos
+     * @param goalPos
+     * @return Turning points of the path (starting point excluded), along with the number of expanded cells
+     */
+    public PathResult replan(Cell startPos, Cell goalPos) {
+        MapSnapshot current = map.getSnapshot();
+        boolean hasFreedCells = false;
+        lastRepairedValues = 0;
+
+        if (grid == null || grid.getWidth() != current.getWidth() || grid.getHeight() != current.getHeight()) {
+            reset();
+
+            int cellCount = current.getWidth() * current.getHeight();
+            if (learnedStamps.length != cellCount) {
+                learnedH = new long[cellCount];
+                learnedGoalShifts = new long[cellCount];
+                learnedStamps = new int[cellCount];
+            }
+        } else if (grid != current) {
+            List<Integer> freedCells = new ArrayList<>();
+            for (int idx : current.getChangedCells(grid)) {
+                if (current.isPositionWalkable(idx % current.getWidth(), idx / current.getWidth())) {
+                    freedCells.add(idx);
+                }
+            }
+
+            grid = current;
+            hasFreedCells = !freedCells.isEmpty();
+            if (hasFreedCells && goal != null) {
+                repairLearnedValues(freedCells);
+            }
+        }
+        grid = current;
+
+        boolean isSameGoal = goal != null && goal.x == goalPos.x && goal.y == goalPos.y;
+        if (goal != null && !isSameGoal) {
+            // Estimate of the new goal towards the old one, under the values learned for the old one
+            goalShift += getH(goalPos.x, goalPos.y);
+            previousPath = null;
+        }
+        goal = new Cell(goalPos.x, goalPos.y);
+
+        isLastPathReused = false;
+        if (isSameGoal && !hasFreedCells && previousPath != null) {
+            List<Cell> path = reusePreviousPath(startPos);
+            if (path != null) {
+                isLastPathReused = true;
+                return new PathResult(path, 0, PathResult.Status.COMPLETE);
+            }
+        }
+
+        return search(startPos);
+    }
+
+    /**
+     * Forget everything learned so far
+     */
+    public void reset() {
+        if (learnedStamp == Integer.MAX_VALUE) {
+            Arrays.fill(learnedStamps, 0);
+            learnedStamp = 0;
+        }
+        learnedStamp++;
+        learnedValueCount = 0;
+        goalShift = 0;
+        goal = null;
+        grid = null;
+        previousPath = null;
+        previousPathPositions = null;
+    }
+
+    /**
+     * @return True if the last replan returned the remainder of the previous path without searching
+     */
+    public boolean isLastPathReused() {
+        return isLastPathReused;
+    }
+
+    /**
+     * @return Number of learned values lowered because of cells freed since the previous replan
+     */
+    public long getLastRepairedValues() {
+        return lastRepairedValues;
+    }
+
+    public int getLearnedValueCount() {
+        return learnedValueCount;
+    }
+
+    /**
+     * Obtain the current (consistent) estimate of the distance from the given position to the goal
+     */
+    private long getH(int x, int y) {
+        long octile = FixedPointOctileDistance.getFixedPointDistance(x, y, goal.x, goal.y);
+        if (x < 0 || x >= grid.getWidth() || y < 0 || y >= grid.getHeight()) {
+            return octile;
+        }
+        int idx = y * grid.getWidth() + x;
+
+        return !isLearned(idx) ? octile : Math.max(octile, learnedH[idx] - (goalShift - learnedGoalShifts[idx]));
+    }
+
+    private boolean isLearned(int idx) {
+        return learnedStamps[idx] == learnedStamp;
+    }
+
+    private void learn(int idx, long h) {
+        if (!isLearned(idx)) {
+            learnedStamps[idx] = learnedStamp;
+            learnedValueCount++;
+        }
+        learnedH[idx] = h;
+        learnedGoalShifts[idx] = goalShift;
+    }
+
+    /**
+     * A* from the given starting point to the goal, then update of the learned values of the expanded cells
+     */
+    private PathResult search(Cell startPos) {
+        int width = grid.getWidth();
+        int startIdx = startPos.y * width + startPos.x;
+        int goalIdx = goal.y * width + goal.x;
+
+        java.util.Map<Integer, Node> nodes = new HashMap<>();
+        List<Node> closedNodes = new ArrayList<>();
+        RadixHeap<Node> openSet = new RadixHeap<>();
+        int tieBreakBits = getTieBreakBits();
+
+        previousPath = null;
+        if (!grid.isPositionWalkable(startPos.x, startPos.y) || !grid.isPositionWalkable(goal.x, goal.y)) {
+            return new PathResult(new LinkedList<>(), 0, PathResult.Status.NO_PATH);
+        }
+
+        Node startNode = new Node(startIdx);
+        startNode.g = 0;
+        startNode.h = getH(startPos.x, startPos.y);
+        nodes.put(startIdx, startNode);
+        openSet.add(getKey(startNode, tieBreakBits), startNode);
+        Node goalNode = null;
+
+        while (!openSet.isEmpty()) {
+            Node node = openSet.poll();
+            if (node.isClosed) {
+                continue;
+            }
+            node.isClosed = true;
+            closedNodes.add(node);
+
+            if (node.idx == goalIdx) {
+                goalNode = node;
+                break;
+            }
+
+            int x = node.idx % width, y = node.idx / width;
+            for (int[] move : MOVES) {
+                int neighborX = x + move[0], neighborY = y + move[1];
+                if (!grid.reachable(x, y, neighborX, neighborY)) {
+                    continue;
+                }
+
+                int neighborIdx = neighborY * width + neighborX;
+                Node neighbor = nodes.computeIfAbsent(neighborIdx, Node::new);
+                long updatedG = node.g + getStepCost(move);
+
+                if (!neighbor.isClosed && updatedG < neighbor.g) {
+                    neighbor.g = updatedG;
+                    neighbor.parent = node;
+                    if (neighbor.h < 0) {
+                        neighbor.h = getH(neighborX, neighborY);
+                    }
+                    openSet.add(getKey(neighbor, tieBreakBits), neighbor);
+                }
+            }
+        }
+
+        if (goalNode == null) {
+            return new PathResult(new LinkedList<>(), closedNodes.size(), PathResult.Status.NO_PATH);
+        }
+
+        // Adaptive A* update: the distance of an expanded cell to the goal is at least G - g
+        for (Node node : closedNodes) {
+            learn(node.idx, goalNode.g - node.g);
+        }
+
+        LinkedList<Integer> path = new LinkedList<>();
+        for (Node node = goalNode; node != null; node = node.parent) {
+            path.addFirst(node.idx);
+        }
+        previousPath = new ArrayList<>(path);
+        previousPathPositions = new HashMap<>();
+        for (int i = 0; i < previousPath.size(); i++) {
+            previousPathPositions.put(previousPath.get(i), i);
+        }
+
+        return new PathResult(getTurningPoints(0), closedNodes.size(), PathResult.Status.COMPLETE);
+    }
+
+    /**
+     * @return Remainder of the previous path from the given position, or null if the position is not on the path
+     *         or the remainder is no longer walkable
+     */
+    private List<Cell> reusePreviousPath(Cell startPos) {
+        int width = grid.getWidth();
+        Integer position = previousPathPositions.get(startPos.y * width + startPos.x);
+        if (position == null) {
+            return null;
+        }
+
+        // New obstacles only lengthen the other paths, so the remainder stays optimal as long as it is walkable
+        for (int i = position; i + 1 < previousPath.size(); i++) {
+            int from = previousPath.get(i), to = previousPath.get(i + 1);
+            if (!grid.reachable(from % width, from / width, to % width, to / width)) {
+                return null;
+            }
+        }
+
+        return getTurningPoints(position);
+    }
+
+    /**
+     * Restore the consistency of the learned values after the given cells were freed. New moves only appear
+     * between cells within one step of a freed cell, so the values that may now be too high are found around
+     * them, and lowering a value may in turn lower the values of its neighbors
+     */
+    private void repairLearnedValues(List<Integer> freedCells) {
+        int width = grid.getWidth();
+        RadixHeap<Integer> queue = new RadixHeap<>();
+
+        for (int freedIdx : freedCells) {
+            int freedX = freedIdx % width, freedY = freedIdx / width;
+
+            for (int x = freedX - 1; x <= freedX + 1; x++) {
+                for (int y = freedY - 1; y <= freedY + 1; y++) {
+                    if (!grid.isPositionWalkable(x, y)) {
+                        continue;
+                    }
+
+                    long h = getH(x, y);
+                    long bestH = h;
+                    for (int[] move : MOVES) {
+                        if (grid.reachable(x, y, x + move[0], y + move[1])) {
+                            bestH = Math.min(bestH, getStepCost(move) + getH(x + move[0], y + move[1]));
+                        }
+                    }
+
+                    if (bestH < h) {
+                        learn(y * width + x, bestH);
+                        queue.add(bestH, y * width + x);
+                        lastRepairedValues++;
+                    }
+                }
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int idx = queue.poll();
+            int x = idx % width, y = idx / width;
+            long h = getH(x, y);
+
+            for (int[] move : MOVES) {
+                int neighborX = x + move[0], neighborY = y + move[1];
+                int neighborIdx = neighborY * width + neighborX;
+
+                // Cells without learned value keep the octile distance, which is always consistent
+                if (!grid.reachable(x, y, neighborX, neighborY) || !isLearned(neighborIdx)) {
+                    continue;
+                }
+
+                long throughCell = getStepCost(move) + h;
+                if (getH(neighborX, neighborY) > throughCell) {
+                    learn(neighborIdx, throughCell);
+                    queue.add(throughCell, neighborIdx);
+                    lastRepairedValues++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Turning points of the previous path from the given position on (that position excluded)
+     */
+    private List<Cell> getTurningPoints(int fromPosition) {
+        int width = grid.getWidth();
+        LinkedList<Cell> turningPoints = new LinkedList<>();
+
+        for (int i = fromPosition + 1; i < previousPath.size(); i++) {
+            int prev = previousPath.get(i - 1), curr = previousPath.get(i);
+            boolean isLast = i + 1 == previousPath.size();
+
+            if (isLast || curr - prev != previousPath.get(i + 1) - curr) {
+                turningPoints.add(new Cell(curr % width, curr / width));
+            }
+        }
+        return turningPoints;
+    }
+
+    /**
+     * Scores are below (cells + width + height) diagonal steps, the tie-break on h (expanding the cells closest
+     * to the goal first among equal scores) takes the low bits left over
+     */
+    private int getTieBreakBits() {
+        long width = grid.getWidth(), height = grid.getHeight();
+        long maxScore = (width * height + width + height) * FixedPointOctileDistance.DIAGONAL_COST;
+        return Math.max(0, Math.min(32, 63 - (64 - Long.numberOfLeadingZeros(maxScore))));
+    }
+
+    private static long getKey(Node node, int tieBreakBits) {
+        return ((node.g + node.h) << tieBreakBits) | Math.min(node.h, (1L << tieBreakBits) - 1);
+    }
+
+    private static long getStepCost(int[] move) {
+        return move[0] != 0 && move[1] != 0
+                ? FixedPointOctileDistance.DIAGONAL_COST
+                : FixedPointOctileDistance.STRAIGHT_COST;
+    }
+}
@@ -0,0 +1,151 @@
+package Replanning;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Engine.PathResult;
+import HeuristicStrategy.FixedPointOctileDistance;
+import Preprocessing.PreprocessingBenchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ReplanningBenchmark: Simulates a unit chasing a moving target on a map being edited, replanning every tick with
+ * an {@link AdaptivePathPlanner}, and compares it with replanning from scratch (same A*, nothing learned)
+ *
+ * Usage:
+ *   java Replanning.ReplanningBenchmark [--map <map file> | --size 256 --density 0.2] [--ticks 2000]
+ *        [--speed 2] [--target-moves 0.3] [--edit-every 5] [--seed 1]
+ *
+ * Every tick, the unit walks speed cells along its path, the target steps to a random neighbor with probability
+ * target-moves, and every edit-every ticks a random cell is blocked or freed. The unit then replans with both
+ * planners, whose path costs must agree.
+ */
+
+public class ReplanningBenchmark {
+
+    public static void main(String[] args) {
+        String mapFile = null;
+        int size = 256, ticks = 2000, speed = 2, editEvery = 5;
+        double density = 0.2, targetMoves = 0.3;
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--map": mapFile = args[++i]; break;
+                case "--size": size = Integer.parseInt(args[++i]); break;
+                case "--density": density = Double.parseDouble(args[++i]); break;
+                case "--ticks": ticks = Integer.parseInt(args[++i]); break;
+                case "--speed": speed = Integer.parseInt(args[++i]); break;
+                case "--target-moves": targetMoves = Double.parseDouble(args[++i]); break;
+                case "--edit-every": editEvery = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Map map;
+        if (mapFile != null) {
+            map = Map.initMap(mapFile);
+        } else {
+            MapSnapshot generated = PreprocessingBenchmark.generateMap(size, size, density, seed);
+            map = Map.initMap(size, size);
+            map.edit(snapshot -> generated);
+        }
+
+        Random random = new Random(seed);
+        Cell unit = getRandomWalkableCell(map.getSnapshot(), random);
+        Cell target = getRandomWalkableCell(map.getSnapshot(), random);
+
+        AdaptivePathPlanner incremental = new AdaptivePathPlanner(map);
+        AdaptivePathPlanner fromScratch = new AdaptivePathPlanner(map);
+        long incrementalNanos = 0, fromScratchNanos = 0;
+        long incrementalExpansions = 0, fromScratchExpansions = 0;
+        int reusedPaths = 0, mismatches = 0, replans = 0;
+        long repairedValues = 0;
+        List<Cell> path = new ArrayList<>();
+
+        for (int tick = 0; tick < ticks; tick++) {
+            MapSnapshot grid = map.getSnapshot();
+
+            // Move the unit along its path, the target at random, and edit the map
+            for (int step = 0; step < speed && !path.isEmpty(); step++) {
+                Cell next = path.get(0);
+                unit = new Cell(unit.x + Integer.signum(next.x - unit.x), unit.y + Integer.signum(next.y - unit.y));
+                if (unit.equals(next)) {
+                    path.remove(0);
+                }
+            }
+            if (random.nextDouble() < targetMoves) {
+                int x = target.x + random.nextInt(3) - 1, y = target.y + random.nextInt(3) - 1;
+                if (grid.reachable(target.x, target.y, x, y)) {
+                    target = new Cell(x, y);
+                }
+            }
+            if (tick % editEvery == 0) {
+                int x = random.nextInt(grid.getWidth()), y = random.nextInt(grid.getHeight());
+                if (grid.isObstacleAt(x, y)) {
+                    map.removeObstacle(x, y);
+                } else if (!(x == unit.x && y == unit.y) && !(x == target.x && y == target.y)) {
+                    map.addObstacle(x, y);
+                }
+            }
+
+            long begin = System.nanoTime();
+            PathResult incrementalResult = incremental.replan(unit, target);
+            long middle = System.nanoTime();
+            fromScratch.reset();
+            PathResult fromScratchResult = fromScratch.replan(unit, target);
+            long end = System.nanoTime();
+
+            replans++;
+            incrementalNanos += middle - begin;
+            fromScratchNanos += end - middle;
+            incrementalExpansions += incrementalResult.expansions;
+            fromScratchExpansions += fromScratchResult.expansions;
+            reusedPaths += incremental.isLastPathReused() ? 1 : 0;
+            repairedValues += incremental.getLastRepairedValues();
+
+            if (getCost(unit, incrementalResult.path) != getCost(unit, fromScratchResult.path)) {
+                mismatches++;
+            }
+            path = new ArrayList<>(incrementalResult.path);
+        }
+
+        System.out.println("Map: " + map.getWidth() + " x " + map.getHeight() + ", replans: " + replans);
+        System.out.println(String.format("From scratch: %9.1f ms, %10d expansions", fromScratchNanos / 1e6,
+                fromScratchExpansions));
+        System.out.println(String.format("Incremental:  %9.1f ms, %10d expansions (%d paths reused, %d learned "
+                        + "values repaired, %d values learned)", incrementalNanos / 1e6, incrementalExpansions,
+                reusedPaths, repairedValues, incremental.getLearnedValueCount()));
+        System.out.println("Path cost mismatches: " + mismatches);
+    }
+
+    private static Cell getRandomWalkableCell(MapSnapshot grid, Random random) {
+        while (true) {
+            int x = random.nextInt(grid.getWidth()), y = random.nextInt(grid.getHeight());
+            if (grid.isPositionWalkable(x, y)) {
+                return new Cell(x, y);
+            }
+        }
+    }
+
+    /**
+     * @return Cost of the given path in fixed-point units, -1 if empty
+     */
+    private static long getCost(Cell startPos, List<Cell> path) {
+        if (path.isEmpty()) {
+            return -1;
+        }
+
+        long cost = 0;
+        Cell prev = startPos;
+        for (Cell pathCell : path) {
+            cost += FixedPointOctileDistance.getFixedPointDistance(prev, pathCell);
+            prev = pathCell;
+        }
+        return cost;
+    }
+}
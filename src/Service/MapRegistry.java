@@ -0,0 +1,57 @@
+package Service;
+
+import Engine.PathFindingEngine;
+import Engine.SearchBudget;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MapRegistry: Maps loaded by the service, each with the engine answering its queries
+ */
+
+public class MapRegistry {
+    private final ConcurrentHashMap<String, PathFindingEngine> engines = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SearchBudget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * Register (or replace) the engine serving the given map id, without search budget
+     * @param mapId
+     * @param engine
+     */
+    public void register(String mapId, PathFindingEngine engine) {
+        register(mapId, engine, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Register (or replace) the engine serving the given map id
+     * @param mapId
+     * @param engine
+     * @param budget Limits of every query on the map
+     */
+    public void register(String mapId, PathFindingEngine engine, SearchBudget budget) {
+        budgets.put(mapId, budget);
+        engines.put(mapId, engine);
+    }
+
+    /**
+     * @param mapId
+     * @return The engine serving the given map id, or null if no such map is loaded
+     */
+    public PathFindingEngine getEngine(String mapId) {
+        return engines.get(mapId);
+    }
+
+    /**
+     * @param mapId
+     * @return The search budget of the given map id, unlimited if no such map is loaded
+     */
+    public SearchBudget getBudget(String mapId) {
+        return budgets.getOrDefault(mapId, SearchBudget.UNLIMITED);
+    }
+
+    public Set<String> getMapIds() {
+        return new TreeSet<>(engines.keySet());
+    }
+}
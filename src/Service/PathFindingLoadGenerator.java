@@ -0,0 +1,231 @@
+package Service;
+
+import DataStructures.Map;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * PathFindingLoadGenerator: Drives a running {@link PathFindingServer} with random queries and reports the
+ * throughput and latency percentiles
+ *
+ * Usage:
+ *   java Service.PathFindingLoadGenerator --address tcp:127.0.0.1:7070 --map maze=./mapFiles/maze-100-1.map
+ *        [--connections 4] [--requests 20000] [--pipeline 32] [--warmup 2000] [--seed 1]
+ *
+ * The map file is only used to pick walkable start & goal positions, it must be the one served under that map id.
+ * Latency is measured per request from the moment it is written until its response is read, so it includes the
+ * time spent queuing behind the other pipelined requests of the connection.
+ */
+
+public class PathFindingLoadGenerator {
+
+    private final SocketAddress address;
+    private final String mapId;
+    private final long[] walkableCells;
+    private final int connections;
+    private final int pipelineDepth;
+
+    public PathFindingLoadGenerator(SocketAddress address, String mapId, Map map, int connections, int pipelineDepth) {
+        this.address = address;
+        this.mapId = mapId;
+        this.walkableCells = collectWalkableCells(map);
+        this.connections = connections;
+        this.pipelineDepth = pipelineDepth;
+
+        if (walkableCells.length == 0) {
+            throw new IllegalArgumentException("Map has no walkable cell");
+        }
+    }
+
+    /**
+     * Send the given number of requests, spread over all connections
+     * @param requests
+     * @param seed
+     * @return
+     * @throws Exception
+     */
+    public Report run(int requests, long seed) throws Exception {
+        ExecutorService executor = VirtualThreads.newThreadPerTaskExecutor("load-generator");
+        List<Future<long[]>> results = new ArrayList<>();
+        int[] statusCounts = new int[Protocol.STATUS_BUDGET_EXCEEDED + 1];
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < connections; i++) {
+            int share = requests / connections + (i < requests % connections ? 1 : 0);
+            Random random = new Random(seed + i);
+            results.add(executor.submit(() -> runConnection(executor, share, random, statusCounts)));
+        }
+
+        long[] latencies = new long[0];
+        for (Future<long[]> result : results) {
+            long[] connectionLatencies = result.get();
+            long[] merged = Arrays.copyOf(latencies, latencies.length + connectionLatencies.length);
+            System.arraycopy(connectionLatencies, 0, merged, latencies.length, connectionLatencies.length);
+            latencies = merged;
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        return new Report(latencies, elapsed, statusCounts);
+    }
+
+    /**
+     * Pipeline requests on a single connection, keeping at most {@code pipelineDepth} of them in flight
+     */
+    private long[] runConnection(ExecutorService executor, int requests, Random random, int[] statusCounts)
+            throws Exception {
+        long[] sentAt = new long[requests];
+        long[] latencies = new long[requests];
+        Semaphore window = new Semaphore(pipelineDepth);
+
+        try (SocketChannel channel = Protocol.connect(address)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Protocol.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Protocol.newOutputStream(channel)));
+
+            Future<?> receiver = executor.submit(() -> {
+                for (int i = 0; i < requests; i++) {
+                    Protocol.Response response = Protocol.readResponse(in);
+                    if (response == null) {
+                        throw new IOException("Server closed the connection after " + i + " responses");
+                    }
+                    latencies[response.requestId] = System.nanoTime() - sentAt[response.requestId];
+                    synchronized (statusCounts) {
+                        statusCounts[response.status]++;
+                    }
+                    window.release();
+                }
+                return null;
+            });
+
+            for (int i = 0; i < requests; i++) {
+                // Flush what is buffered before waiting for the window to open up
+                if (!window.tryAcquire()) {
+                    out.flush();
+                    window.acquire();
+                }
+
+                long start = walkableCells[random.nextInt(walkableCells.length)];
+                long goal = walkableCells[random.nextInt(walkableCells.length)];
+
+                sentAt[i] = System.nanoTime();
+                Protocol.writeRequest(out, new Protocol.Request(i, mapId,
+                        (int) (start >>> 32), (int) start, (int) (goal >>> 32), (int) goal));
+            }
+            out.flush();
+
+            receiver.get();
+        }
+
+        return latencies;
+    }
+
+    /**
+     * Walkable positions of the map, packed as (x << 32 | y)
+     */
+    private static long[] collectWalkableCells(Map map) {
+        long[] cells = new long[map.getWidth() * map.getHeight()];
+        int count = 0;
+
+        for (int x = 0; x < map.getWidth(); x++) {
+            for (int y = 0; y < map.getHeight(); y++) {
+                if (map.isPositionWalkable(x, y)) {
+                    cells[count++] = ((long) x << 32) | y;
+                }
+            }
+        }
+
+        return Arrays.copyOf(cells, count);
+    }
+
+    public static class Report {
+        public final long[] latencies;
+        public final long elapsedNanos;
+        public final int[] statusCounts;
+
+        Report(long[] latencies, long elapsedNanos, int[] statusCounts) {
+            this.latencies = latencies.clone();
+            this.elapsedNanos = elapsedNanos;
+            this.statusCounts = statusCounts;
+            Arrays.sort(this.latencies);
+        }
+
+        public double getThroughput() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @param percentile Between 0 and 100
+         * @return Latency at the given percentile, in microseconds
+         */
+        public double getLatencyMicros(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int idx = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(idx, latencies.length - 1))] / 1e3;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Requests: %d in %.1f ms, throughput: %.0f req/s%n" +
+                            "Latency (us): p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n" +
+                            "Status: ok %d, no path %d, unknown map %d, invalid position %d, error %d, " +
+                            "budget exceeded %d",
+                    latencies.length, elapsedNanos / 1e6, getThroughput(),
+                    getLatencyMicros(50), getLatencyMicros(90), getLatencyMicros(99), getLatencyMicros(99.9),
+                    getLatencyMicros(100),
+                    statusCounts[Protocol.STATUS_OK], statusCounts[Protocol.STATUS_NO_PATH],
+                    statusCounts[Protocol.STATUS_UNKNOWN_MAP], statusCounts[Protocol.STATUS_INVALID_POSITION],
+                    statusCounts[Protocol.STATUS_ERROR], statusCounts[Protocol.STATUS_BUDGET_EXCEEDED]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String endpoint = "tcp:127.0.0.1:7070";
+        String mapSpec = null;
+        int connections = 4, requests = 20000, pipeline = 32, warmup = 2000;
+        long seed = 1;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--address": endpoint = args[++i]; break;
+                case "--map": mapSpec = args[++i]; break;
+                case "--connections": connections = Integer.parseInt(args[++i]); break;
+                case "--requests": requests = Integer.parseInt(args[++i]); break;
+                case "--pipeline": pipeline = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (mapSpec == null || !mapSpec.contains("=")) {
+            throw new IllegalArgumentException("Missing --map <mapId>=<map file>");
+        }
+
+        String mapId = mapSpec.substring(0, mapSpec.indexOf('='));
+        Map map = Map.initMap(mapSpec.substring(mapSpec.indexOf('=') + 1));
+
+        PathFindingLoadGenerator generator = new PathFindingLoadGenerator(Protocol.parseAddress(endpoint), mapId,
+                map, connections, pipeline);
+
+        if (warmup > 0) {
+            generator.run(warmup, seed - 1);
+        }
+        System.out.println("Connections: " + connections + ", pipeline depth: " + pipeline
+                + ", virtual threads: " + VirtualThreads.isAvailable());
+        System.out.println(generator.run(requests, seed));
+    }
+}
@@ -0,0 +1,326 @@
+package Service;
+
+import DataStructures.Cell;
+import DataStructures.MapSnapshot;
+import Engine.AsyncPathFinder;
+import Engine.PathFindingEngine;
+import Engine.PathResult;
+import Tracing.QueryRecorder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PathFindingServer: Answers path-finding queries on the maps of a {@link MapRegistry} over a local TCP or
+ * Unix domain socket, see {@link Protocol} for the wire format
+ *
+ * Threading model:
+ *   1) Every connection gets a reader thread and a writer thread, both virtual whenever the JVM supports them
+ *   2) The reader decodes pipelined requests and hands the searches over to the (CPU-bound) search executor,
+ *      through an {@link AsyncPathFinder} per map, so that identical requests in flight share a single search
+ *   3) At most {@code pipelineDepth} requests of a connection are in flight. Once the limit is reached the reader
+ *      stops reading, so the backpressure reaches the client through the socket buffers
+ *   4) The writer sends the responses in the order of the requests, flushing whenever it has caught up
+ *
+ * With a {@link QueryRecorder}, every valid request is recorded once answered, including the ones that joined an
+ * identical search in flight (recorded with the expansions of that search). The latency is the one of the request,
+ * time spent waiting for a search thread included.
+ */
+
+public class PathFindingServer implements Closeable {
+
+    /** Marks the end of the requests of a connection */
+    private static final Future<Protocol.Response> END_OF_REQUESTS = CompletableFuture.completedFuture(null);
+
+    private final MapRegistry registry;
+    private final ExecutorService searchExecutor;
+    private final ConcurrentHashMap<String, AsyncPathFinder> pathFinders = new ConcurrentHashMap<>();
+    private final ExecutorService connectionExecutor = VirtualThreads.newThreadPerTaskExecutor("path-finding-connection");
+    private final int pipelineDepth;
+    private final QueryRecorder recorder;
+
+    private ServerSocketChannel serverChannel;
+    private SocketAddress boundAddress;
+
+    private final AtomicLong acceptedConnections = new AtomicLong();
+    private final AtomicLong answeredRequests = new AtomicLong();
+
+    /**
+     * @param registry Maps to serve
+     * @param searchExecutor Executor running the searches, typically a fixed pool of one thread per core
+     * @param pipelineDepth Maximum number of in-flight requests per connection
+     */
+    public PathFindingServer(MapRegistry registry, ExecutorService searchExecutor, int pipelineDepth) {
+        this(registry, searchExecutor, pipelineDepth, null);
+    }
+
+    /**
+     * @param registry Maps to serve
+     * @param searchExecutor Executor running the searches, typically a fixed pool of one thread per core
+     * @param pipelineDepth Maximum number of in-flight requests per connection
+     * @param recorder Records the answered requests, null not to record them
+     */
+    public PathFindingServer(MapRegistry registry, ExecutorService searchExecutor, int pipelineDepth,
+                             QueryRecorder recorder) {
+        if (pipelineDepth < 1) {
+            throw new IllegalArgumentException("Pipeline depth must be positive: " + pipelineDepth);
+        }
+        this.registry = registry;
+        this.searchExecutor = searchExecutor;
+        this.pipelineDepth = pipelineDepth;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Bind the server to a local address. A stale Unix domain socket file left by a previous run is removed
+     * @param address
+     * @return The actual address, e.g. with the port picked by the system if port 0 was requested
+     * @throws IOException
+     */
+    public SocketAddress bind(SocketAddress address) throws IOException {
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+
+        serverChannel = Protocol.openServerChannel(address);
+        serverChannel.bind(address);
+        boundAddress = serverChannel.getLocalAddress();
+        return boundAddress;
+    }
+
+    /**
+     * Accept connections until the server is closed
+     * @throws IOException
+     */
+    public void serve() throws IOException {
+        if (serverChannel == null) {
+            throw new IllegalStateException("Server is not bound");
+        }
+
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                break;
+            }
+
+            Protocol.enableNoDelay(channel);
+            acceptedConnections.incrementAndGet();
+            connectionExecutor.execute(() -> readRequests(channel));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        connectionExecutor.shutdownNow();
+
+        if (boundAddress instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) boundAddress).getPath());
+        }
+    }
+
+    public long getAcceptedConnections() {
+        return acceptedConnections.get();
+    }
+
+    public long getAnsweredRequests() {
+        return answeredRequests.get();
+    }
+
+    /**
+     * @param mapId
+     * @return The path finder running the searches of the given map id, or null if no query reached it yet
+     */
+    public AsyncPathFinder getPathFinder(String mapId) {
+        return pathFinders.get(mapId);
+    }
+
+    /**
+     * Obtain the path finder of the given map id, creating it for the current engine of the map if needed
+     */
+    private AsyncPathFinder getPathFinder(String mapId, PathFindingEngine engine) {
+        // Lock-free on the usual path, compute() locking the entry of the map
+        AsyncPathFinder current = pathFinders.get(mapId);
+        if (current != null && current.getEngine() == engine) {
+            return current;
+        }
+        return pathFinders.compute(mapId, (id, pathFinder) -> pathFinder != null && pathFinder.getEngine() == engine
+                ? pathFinder
+                : new AsyncPathFinder(engine, searchExecutor, registry.getBudget(id)));
+    }
+
+    /**
+     * Decode the requests of a connection and dispatch them to the search executor
+     * @param channel
+     */
+    private void readRequests(SocketChannel channel) {
+        // A permit per request in flight, taken before its search starts and given back once it is answered
+        Semaphore permits = new Semaphore(pipelineDepth);
+        BlockingQueue<Future<Protocol.Response>> inFlight = new ArrayBlockingQueue<>(pipelineDepth + 1);
+        connectionExecutor.execute(() -> writeResponses(channel, inFlight, permits));
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Protocol.newInputStream(channel)));
+            Protocol.Request request;
+
+            while ((request = Protocol.readRequest(in)) != null) {
+                Protocol.Request query = request;
+                // Blocks while the connection has too many requests in flight
+                permits.acquire();
+                inFlight.put(answer(query));
+            }
+        } catch (IOException e) {
+            // Broken connection or malformed frame, drop the connection once the answered requests are sent
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                inFlight.put(END_OF_REQUESTS);
+            } catch (InterruptedException e) {
+                // The server is shutting down, the writer is interrupted as well
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Send the responses of a connection in the order of its requests
+     * @param channel
+     * @param inFlight
+     * @param permits Given back as the requests are answered
+     */
+    private void writeResponses(SocketChannel channel, BlockingQueue<Future<Protocol.Response>> inFlight,
+                                Semaphore permits) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Protocol.newOutputStream(channel)));
+        boolean connectionBroken = false;
+
+        try {
+            while (true) {
+                Future<Protocol.Response> pending = inFlight.take();
+                if (pending == END_OF_REQUESTS) {
+                    break;
+                }
+
+                if (connectionBroken) {
+                    // Keep draining, so that the reader is never stuck waiting for a permit
+                    pending.cancel(false);
+                    permits.release();
+                    continue;
+                }
+
+                try {
+                    Protocol.writeResponse(out, pending.get());
+                    answeredRequests.incrementAndGet();
+
+                    if (inFlight.isEmpty()) {
+                        out.flush();
+                    }
+                } catch (IOException | ExecutionException e) {
+                    connectionBroken = true;
+                    closeQuietly(channel);
+                } finally {
+                    permits.release();
+                }
+            }
+
+            if (!connectionBroken) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Nothing else can be sent on this connection
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Check a single request, and start its search if valid
+     * @param request
+     * @return
+     */
+    private CompletableFuture<Protocol.Response> answer(Protocol.Request request) {
+        PathFindingEngine engine = registry.getEngine(request.mapId);
+        if (engine == null) {
+            return CompletableFuture.completedFuture(
+                    new Protocol.Response(request.requestId, Protocol.STATUS_UNKNOWN_MAP, new int[0]));
+        }
+
+        // The request is checked, searched & recorded on a single snapshot of the map
+        MapSnapshot grid = engine.getMap().getSnapshot();
+        if (!grid.isPositionWalkable(request.startX, request.startY) ||
+                !grid.isPositionWalkable(request.goalX, request.goalY)) {
+            return CompletableFuture.completedFuture(
+                    new Protocol.Response(request.requestId, Protocol.STATUS_INVALID_POSITION, new int[0]));
+        }
+
+        Cell startPos = new Cell(request.startX, request.startY), goalPos = new Cell(request.goalX, request.goalY);
+        long mapVersion = grid.getVersion();
+        long begin = System.nanoTime();
+        AsyncPathFinder pathFinder = getPathFinder(request.mapId, engine);
+        CompletableFuture<PathResult> search = pathFinder.query(startPos, goalPos, grid);
+
+        if (recorder != null) {
+            search = search.whenComplete((result, error) -> {
+                if (error == null) {
+                    recorder.record(request.mapId, engine.getName(), mapVersion, startPos, goalPos,
+                            System.nanoTime() - begin, result, pathFinder.getBudget());
+                }
+            });
+        }
+
+        return search.handle((result, error) -> error != null
+                        ? new Protocol.Response(request.requestId, Protocol.STATUS_ERROR, new int[0])
+                        : toResponse(request, result));
+    }
+
+    private static Protocol.Response toResponse(Protocol.Request request, PathResult result) {
+        if (result.status == PathResult.Status.NO_PATH) {
+            return new Protocol.Response(request.requestId, Protocol.STATUS_NO_PATH, new int[0]);
+        }
+
+        List<Cell> path = result.path;
+        int[] coordinates = new int[path.size() * 2];
+        int idx = 0;
+        for (Cell cell : path) {
+            coordinates[idx++] = cell.x;
+            coordinates[idx++] = cell.y;
+        }
+
+        return new Protocol.Response(request.requestId, result.status == PathResult.Status.BUDGET_EXCEEDED
+                ? Protocol.STATUS_BUDGET_EXCEEDED : Protocol.STATUS_OK, coordinates);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package Service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Protocol: Wire format of the path-finding service
+ *
+ * Every message is a frame made of a 4-byte big-endian length followed by that many bytes of payload:
+ *
+ *   Request:  | requestId (int) | mapId length (short) | mapId (UTF-8) | startX | startY | goalX | goalY (int) |
+ *   Response: | requestId (int) | status (byte) | number of path cells (int) | x, y (int) of every path cell |
+ *
+ * Coordinates are given in the Cartesian coordinate system of {@link DataStructures.Map}. Responses of a
+ * connection are sent in the order of its requests, so clients may pipeline any number of requests.
+ *
+ * Endpoints are written as "tcp:host:port" or "unix:/path/to/socket".
+ */
+
+public final class Protocol {
+
+    /** Frames larger than this are rejected, as no valid request gets anywhere near it */
+    public static final int MAX_REQUEST_LENGTH = 4096;
+
+    public static final byte STATUS_OK = 0;
+    public static final byte STATUS_NO_PATH = 1;
+    public static final byte STATUS_UNKNOWN_MAP = 2;
+    public static final byte STATUS_INVALID_POSITION = 3;
+    public static final byte STATUS_ERROR = 4;
+    /** The search ran out of the budget of the map, the path is a partial path towards the goal point */
+    public static final byte STATUS_BUDGET_EXCEEDED = 5;
+
+    private Protocol() {}
+
+    public static class Request {
+        public int requestId;
+        public String mapId;
+        public int startX, startY;
+        public int goalX, goalY;
+
+        public Request(int requestId, String mapId, int startX, int startY, int goalX, int goalY) {
+            this.requestId = requestId;
+            this.mapId = mapId;
+            this.startX = startX;
+            this.startY = startY;
+            this.goalX = goalX;
+            this.goalY = goalY;
+        }
+    }
+
+    public static class Response {
+        public int requestId;
+        public byte status;
+        /** Path cells, flattened as x0, y0, x1, y1, ... */
+        public int[] path;
+
+        public Response(int requestId, byte status, int[] path) {
+            this.requestId = requestId;
+            this.status = status;
+            this.path = path;
+        }
+
+        public int getPathLength() {
+            return path.length / 2;
+        }
+    }
+
+    /** ---------- Frames ---------- */
+
+    public static void writeRequest(DataOutputStream out, Request request) throws IOException {
+        byte[] mapId = request.mapId.getBytes(StandardCharsets.UTF_8);
+
+        out.writeInt(4 + 2 + mapId.length + 16);
+        out.writeInt(request.requestId);
+        out.writeShort(mapId.length);
+        out.write(mapId);
+        out.writeInt(request.startX);
+        out.writeInt(request.startY);
+        out.writeInt(request.goalX);
+        out.writeInt(request.goalY);
+    }
+
+    /**
+     * Read the next request frame
+     * @param in
+     * @return The request, or null if the peer has closed the connection
+     * @throws IOException If the stream is broken or the frame is malformed
+     */
+    public static Request readRequest(DataInputStream in) throws IOException {
+        Integer length = readFrameLength(in);
+        if (length == null) {
+            return null;
+        }
+        if (length < 4 + 2 + 16 || length > MAX_REQUEST_LENGTH) {
+            throw new IOException("Invalid request frame length: " + length);
+        }
+
+        int requestId = in.readInt();
+        int mapIdLength = in.readUnsignedShort();
+        if (mapIdLength != length - 4 - 2 - 16) {
+            throw new IOException("Invalid map id length: " + mapIdLength);
+        }
+        byte[] mapId = new byte[mapIdLength];
+        in.readFully(mapId);
+
+        return new Request(requestId, new String(mapId, StandardCharsets.UTF_8),
+                in.readInt(), in.readInt(), in.readInt(), in.readInt());
+    }
+
+    public static void writeResponse(DataOutputStream out, Response response) throws IOException {
+        out.writeInt(4 + 1 + 4 + response.path.length * 4);
+        out.writeInt(response.requestId);
+        out.writeByte(response.status);
+        out.writeInt(response.getPathLength());
+        for (int coordinate : response.path) {
+            out.writeInt(coordinate);
+        }
+    }
+
+    /**
+     * Read the next response frame
+     * @param in
+     * @return The response, or null if the peer has closed the connection
+     * @throws IOException If the stream is broken or the frame is malformed
+     */
+    public static Response readResponse(DataInputStream in) throws IOException {
+        Integer length = readFrameLength(in);
+        if (length == null) {
+            return null;
+        }
+
+        int requestId = in.readInt();
+        byte status = in.readByte();
+        int pathLength = in.readInt();
+        // Range-checked first, so that the size computed below cannot overflow
+        if (length < 4 + 1 + 4 || pathLength < 0 || pathLength > (length - 4 - 1 - 4) / 8 ||
+                length != 4 + 1 + 4 + pathLength * 8) {
+            throw new IOException("Invalid response frame length: " + length);
+        }
+
+        int[] path = new int[pathLength * 2];
+        for (int i = 0; i < path.length; i++) {
+            path[i] = in.readInt();
+        }
+
+        return new Response(requestId, status, path);
+    }
+
+    private static Integer readFrameLength(DataInputStream in) throws IOException {
+        int firstByte = in.read();
+        if (firstByte < 0) {
+            return null;
+        }
+
+        byte[] remaining = new byte[3];
+        try {
+            in.readFully(remaining);
+        } catch (EOFException e) {
+            throw new IOException("Connection closed in the middle of a frame", e);
+        }
+
+        return (firstByte << 24) | ((remaining[0] & 0xFF) << 16) | ((remaining[1] & 0xFF) << 8) | (remaining[2] & 0xFF);
+    }
+
+    /** ---------- Endpoints ---------- */
+
+    /**
+     * Parse an endpoint of the form "tcp:host:port" or "unix:/path/to/socket"
+     * @param endpoint
+     * @return
+     */
+    public static SocketAddress parseAddress(String endpoint) {
+        if (endpoint.startsWith("unix:")) {
+            return UnixDomainSocketAddress.of(endpoint.substring("unix:".length()));
+        }
+        if (endpoint.startsWith("tcp:")) {
+            String hostAndPort = endpoint.substring("tcp:".length());
+            int separator = hostAndPort.lastIndexOf(':');
+            if (separator > 0) {
+                return new InetSocketAddress(hostAndPort.substring(0, separator),
+                        Integer.parseInt(hostAndPort.substring(separator + 1)));
+            }
+        }
+        throw new IllegalArgumentException("Invalid endpoint: " + endpoint
+                + " (expected tcp:host:port or unix:/path/to/socket)");
+    }
+
+    public static ServerSocketChannel openServerChannel(SocketAddress address) throws IOException {
+        return address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX)
+                : ServerSocketChannel.open();
+    }
+
+    public static SocketChannel connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX)
+                : SocketChannel.open();
+        channel.connect(address);
+        enableNoDelay(channel);
+        return channel;
+    }
+
+    /**
+     * Disable Nagle's algorithm on TCP connections, as responses are flushed in batches already
+     * @param channel
+     * @throws IOException
+     */
+    public static void enableNoDelay(SocketChannel channel) throws IOException {
+        if (!(channel.getLocalAddress() instanceof UnixDomainSocketAddress)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        }
+    }
+
+    /**
+     * Stream reading from a blocking channel
+     *
+     * Note: Not based on {@link java.nio.channels.Channels#newInputStream}, whose reads hold the blocking lock of
+     *       the channel, which stalls the writes of the other direction
+     *
+     * @param channel
+     * @return
+     */
+    public static InputStream newInputStream(SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return len == 0 ? 0 : channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Stream writing to a blocking channel, see {@link #newInputStream}
+     * @param channel
+     * @return
+     */
+    public static OutputStream newOutputStream(SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,60 @@
+package Service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * VirtualThreads: Creates thread-per-task executors backed by virtual threads whenever the running JVM offers
+ * them (Java 21+), and by daemon platform threads otherwise
+ *
+ * Note: The lookup is done reflectively, so that the sources still compile against older JDKs
+ */
+
+public final class VirtualThreads {
+
+    private VirtualThreads() {}
+
+    /**
+     * Check if the running JVM supports virtual threads
+     * @return
+     */
+    public static boolean isAvailable() {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor == null) {
+            return false;
+        }
+        executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Create an executor that starts one new thread for each submitted task
+     * @param namePrefix Name prefix of the threads, used only if virtual threads are unavailable
+     * @return
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor != null) {
+            return executor;
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, namePrefix + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // Not available (before Java 19) or not enabled (preview in Java 19 & 20)
+            return null;
+        }
+    }
+}
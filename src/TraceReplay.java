@@ -0,0 +1,287 @@
+import DataStructures.Cell;
+import DataStructures.Map;
+import Engine.PathFindingEngine;
+import Engine.PathResult;
+import Engine.SearchBudget;
+import HeuristicStrategy.FixedPointOctileDistance;
+import Tracing.TraceReader;
+import Tracing.TraceRecord;
+import Tracing.TraceWriter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * TraceReplay: Re-runs a recorded query trace (see PathFindingService --record) against the current engine, and
+ * flags the queries that got slower, expand more nodes, or return a different path cost than in a baseline
+ *
+ * Usage:
+ *   java TraceReplay --trace <trace file> <mapId>=<map file> ... [--concurrency 1] [--warmup 1]
+ *        [--baseline <trace file>] [--output <trace file>] [--engine jps]
+ *        [--latency-ratio 1.5] [--latency-slack-us 100] [--expansion-ratio 1.0]
+ *
+ * The baseline defaults to the recorded trace itself. Latencies recorded on another machine are hardly comparable,
+ * so for gating an engine change, replay the trace with the current engine first and keep the result:
+ *   java TraceReplay --trace prod.trace maze=maze.map --output baseline.trace
+ * then replay it with the changed engine against that baseline:
+ *   java TraceReplay --trace prod.trace maze=maze.map --baseline baseline.trace
+ * The exit status is 1 if any query regressed. --engine selects the engine replaying the trace (see
+ * {@link EngineFactory} for the names), e.g. for comparing the subgoal graph engine with JumpPointSearch.
+ *
+ * A query regresses if its latency exceeds both latency-ratio times and latency-slack-us more than the baseline, if
+ * it expands more than expansion-ratio times the nodes of the baseline, if its status differs (e.g. it runs out of
+ * budget, or finds no path), or if both searches completed with different path costs. Queries are replayed under
+ * the budget limits they were recorded with; a query stopped by a time limit may legitimately change status.
+ */
+
+public class TraceReplay {
+    private static final int REPORTED_REGRESSIONS = 20;
+
+    public static void main(String[] args) throws Exception {
+        String traceFile = null, baselineFile = null, outputFile = null;
+        int concurrency = 1, warmup = 1;
+        String engineName = EngineFactory.DEFAULT_ENGINE;
+        double latencyRatio = 1.5, expansionRatio = 1.0;
+        long latencySlackNanos = 100_000;
+        List<String> mapSpecs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--trace": traceFile = args[++i]; break;
+                case "--baseline": baselineFile = args[++i]; break;
+                case "--output": outputFile = args[++i]; break;
+                case "--concurrency": concurrency = Integer.parseInt(args[++i]); break;
+                case "--warmup": warmup = Integer.parseInt(args[++i]); break;
+                case "--engine": engineName = args[++i]; break;
+                case "--latency-ratio": latencyRatio = Double.parseDouble(args[++i]); break;
+                case "--latency-slack-us": latencySlackNanos = Long.parseLong(args[++i]) * 1000; break;
+                case "--expansion-ratio": expansionRatio = Double.parseDouble(args[++i]); break;
+                default: mapSpecs.add(args[i]);
+            }
+        }
+        if (traceFile == null) {
+            throw new IllegalArgumentException("Missing --trace <trace file>");
+        }
+
+        java.util.Map<String, PathFindingEngine> engines = new HashMap<>();
+        for (String mapSpec : mapSpecs) {
+            int separator = mapSpec.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid map (expected <mapId>=<map file>): " + mapSpec);
+            }
+
+            engines.put(mapSpec.substring(0, separator),
+                    EngineFactory.create(engineName, Map.initMap(mapSpec.substring(separator + 1))));
+        }
+
+        List<TraceRecord> trace = TraceReader.readAll(traceFile);
+        List<TraceRecord> baseline = baselineFile != null ? TraceReader.readAll(baselineFile) : trace;
+        checkTrace(trace, baseline, engines);
+
+        for (int round = 0; round < warmup; round++) {
+            replay(trace, engines, concurrency);
+        }
+        List<TraceRecord> replayed = replay(trace, engines, concurrency);
+
+        if (outputFile != null) {
+            try (TraceWriter writer = new TraceWriter(outputFile)) {
+                for (TraceRecord record : replayed) {
+                    writer.write(record);
+                }
+            }
+        }
+
+        int regressions = compare(baseline, replayed, latencyRatio, latencySlackNanos, expansionRatio);
+        System.exit(regressions > 0 ? 1 : 0);
+    }
+
+    /**
+     * Check that every query of the trace can be replayed, and that the baseline holds the very same queries
+     */
+    private static void checkTrace(List<TraceRecord> trace, List<TraceRecord> baseline,
+                                   java.util.Map<String, PathFindingEngine> engines) {
+        int editedMapQueries = 0;
+
+        for (int i = 0; i < trace.size(); i++) {
+            TraceRecord record = trace.get(i);
+            PathFindingEngine engine = engines.get(record.mapId);
+            if (engine == null) {
+                throw new IllegalArgumentException("No map file given for map id " + record.mapId);
+            }
+            if (record.mapVersion != engine.getMap().getSnapshot().getVersion()) {
+                editedMapQueries++;
+            }
+
+            TraceRecord baselineRecord = i < baseline.size() ? baseline.get(i) : null;
+            if (baselineRecord == null || !baselineRecord.mapId.equals(record.mapId) ||
+                    baselineRecord.startX != record.startX || baselineRecord.startY != record.startY ||
+                    baselineRecord.goalX != record.goalX || baselineRecord.goalY != record.goalY) {
+                throw new IllegalArgumentException("The baseline does not hold the queries of the trace (query "
+                        + i + " differs)");
+            }
+        }
+        if (baseline.size() != trace.size()) {
+            throw new IllegalArgumentException("The baseline holds " + baseline.size() + " queries, the trace "
+                    + trace.size());
+        }
+
+        if (editedMapQueries > 0) {
+            System.out.println("Warning: " + editedMapQueries + " queries were recorded on an edited version of "
+                    + "their map, their results may legitimately differ");
+        }
+    }
+
+    /**
+     * Run all queries of the trace, in order if single-threaded, otherwise by the given number of threads
+     * @return The replayed queries, in the order of the trace
+     */
+    private static List<TraceRecord> replay(List<TraceRecord> trace, java.util.Map<String, PathFindingEngine> engines,
+                                            int concurrency) throws Exception {
+        List<TraceRecord> replayed = new ArrayList<>(trace.size());
+
+        if (concurrency <= 1) {
+            for (TraceRecord record : trace) {
+                replayed.add(replay(record, engines.get(record.mapId)));
+            }
+            return replayed;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<TraceRecord>> futures = new ArrayList<>(trace.size());
+            for (TraceRecord record : trace) {
+                futures.add(executor.submit(() -> replay(record, engines.get(record.mapId))));
+            }
+            for (Future<TraceRecord> future : futures) {
+                replayed.add(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return replayed;
+    }
+
+    private static TraceRecord replay(TraceRecord record, PathFindingEngine engine) {
+        Cell startPos = new Cell(record.startX, record.startY);
+        Cell goalPos = new Cell(record.goalX, record.goalY);
+
+        // Under the limits the query was recorded with, a fresh budget per query
+        SearchBudget budget = record.toBudget();
+
+        long begin = System.nanoTime();
+        PathResult result = engine.query(startPos, goalPos, budget);
+        long latencyNanos = System.nanoTime() - begin;
+
+        long pathCost = result.status == PathResult.Status.COMPLETE
+                ? FixedPointOctileDistance.toUnits(PathFindingEngine.getPathCost(startPos, result.path))
+                : TraceRecord.NO_PATH;
+
+        return TraceRecord.of(record.mapId, engine.getName(), engine.getMap().getSnapshot().getVersion(),
+                record.startX, record.startY, record.goalX, record.goalY, latencyNanos, result, pathCost, budget);
+    }
+
+    /**
+     * Print the comparison of the replayed queries with the baseline
+     * @return Number of regressed queries
+     */
+    private static int compare(List<TraceRecord> baseline, List<TraceRecord> replayed, double latencyRatio,
+                               long latencySlackNanos, double expansionRatio) {
+        List<String> regressions = new ArrayList<>();
+        long baselineExpansions = 0, replayedExpansions = 0;
+        int slower = 0, moreExpansions = 0, changedStatuses = 0, changedResults = 0;
+
+        for (int i = 0; i < replayed.size(); i++) {
+            TraceRecord before = baseline.get(i);
+            TraceRecord after = replayed.get(i);
+            List<String> reasons = new ArrayList<>();
+
+            if (after.latencyNanos > before.latencyNanos * latencyRatio &&
+                    after.latencyNanos > before.latencyNanos + latencySlackNanos) {
+                slower++;
+                reasons.add(String.format("latency %.1f -> %.1f us", before.latencyNanos / 1e3,
+                        after.latencyNanos / 1e3));
+            }
+
+            if (before.expansions != PathResult.UNKNOWN_EXPANSIONS &&
+                    after.expansions != PathResult.UNKNOWN_EXPANSIONS) {
+                baselineExpansions += before.expansions;
+                replayedExpansions += after.expansions;
+
+                if (after.expansions > before.expansions * expansionRatio) {
+                    moreExpansions++;
+                    reasons.add("expansions " + before.expansions + " -> " + after.expansions);
+                }
+            }
+
+            // The costs of a search stopped by its budget, or which found no path, are not comparable
+            if (before.status != after.status) {
+                changedStatuses++;
+                reasons.add("status " + before.status + " -> " + after.status);
+            }
+            else if (after.status == PathResult.Status.COMPLETE && isResultChanged(before.pathCost, after.pathCost)) {
+                changedResults++;
+                reasons.add("path cost " + formatCost(before.pathCost) + " -> " + formatCost(after.pathCost));
+            }
+
+            if (!reasons.isEmpty()) {
+                regressions.add(String.format("  #%d %s [%d, %d] -> [%d, %d]: %s", i, after.mapId, after.startX,
+                        after.startY, after.goalX, after.goalY, String.join(", ", reasons)));
+            }
+        }
+
+        System.out.println("Queries: " + replayed.size() + (replayed.isEmpty() ? "" : ", engine: "
+                + replayed.get(0).engineName));
+        System.out.println(String.format("Latency (us)   baseline p50 %9.1f  p99 %9.1f  max %9.1f",
+                getPercentileMicros(baseline, 50), getPercentileMicros(baseline, 99),
+                getPercentileMicros(baseline, 100)));
+        System.out.println(String.format("               replayed p50 %9.1f  p99 %9.1f  max %9.1f",
+                getPercentileMicros(replayed, 50), getPercentileMicros(replayed, 99),
+                getPercentileMicros(replayed, 100)));
+        System.out.println("Expansions:    baseline " + baselineExpansions + ", replayed " + replayedExpansions);
+        System.out.println("Regressions:   " + regressions.size() + " queries (slower: " + slower
+                + ", more expansions: " + moreExpansions + ", different status: " + changedStatuses
+                + ", different path cost: " + changedResults + ")");
+
+        for (String regression : regressions.subList(0, Math.min(REPORTED_REGRESSIONS, regressions.size()))) {
+            System.out.println(regression);
+        }
+        if (regressions.size() > REPORTED_REGRESSIONS) {
+            System.out.println("  ... and " + (regressions.size() - REPORTED_REGRESSIONS) + " more");
+        }
+
+        return regressions.size();
+    }
+
+    /**
+     * Costs of complete searches are compared with a tolerance of one unit, plus the rounding of the fixed-point
+     * search mode, so that switching between floating-point & fixed-point costs is not reported as a change
+     */
+    private static boolean isResultChanged(long beforeCost, long afterCost) {
+        long tolerance = Math.max(1, Math.max(beforeCost, afterCost) / 50_000);
+        return Math.abs(beforeCost - afterCost) > tolerance;
+    }
+
+    private static String formatCost(long cost) {
+        return cost == TraceRecord.NO_PATH ? "none" : String.format("%.4f", FixedPointOctileDistance.toCells(cost));
+    }
+
+    private static double getPercentileMicros(List<TraceRecord> records, double percentile) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+
+        long[] latencies = new long[records.size()];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = records.get(i).latencyNanos;
+        }
+        Arrays.sort(latencies);
+
+        int idx = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(0, idx)] / 1e3;
+    }
+}
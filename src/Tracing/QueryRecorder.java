@@ -0,0 +1,59 @@
+package Tracing;
+
+import DataStructures.Cell;
+import Engine.PathFindingEngine;
+import Engine.PathResult;
+import Engine.SearchBudget;
+import HeuristicStrategy.FixedPointOctileDistance;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * QueryRecorder: Turns answered point-to-point queries into {@link TraceRecord}s and writes them to a trace
+ *
+ * Note: A failure to write the trace stops the recording, never the query. A query stopped by its budget is
+ *       recorded with its status & the limits of the budget, and without path cost.
+ */
+
+public class QueryRecorder {
+    private final TraceWriter writer;
+    private final AtomicBoolean isRecording = new AtomicBoolean(true);
+
+    /**
+     * @param writer May be shared by several recorders
+     */
+    public QueryRecorder(TraceWriter writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * @param mapId Id under which the map is served
+     * @param engineName
+     * @param mapVersion Version of the map when the query started
+     * @param startPos
+     * @param goalPos
+     * @param latencyNanos
+     * @param result
+     * @param budget Budget the query ran under
+     */
+    public void record(String mapId, String engineName, long mapVersion, Cell startPos, Cell goalPos,
+                       long latencyNanos, PathResult result, SearchBudget budget) {
+        if (!isRecording.get()) {
+            return;
+        }
+
+        long pathCost = result.status == PathResult.Status.COMPLETE
+                ? FixedPointOctileDistance.toUnits(PathFindingEngine.getPathCost(startPos, result.path))
+                : TraceRecord.NO_PATH;
+
+        try {
+            writer.write(TraceRecord.of(mapId, engineName, mapVersion, startPos.x, startPos.y, goalPos.x, goalPos.y,
+                    latencyNanos, result, pathCost, budget));
+        } catch (IOException e) {
+            if (isRecording.compareAndSet(true, false)) {
+                System.err.println("Query recording of map " + mapId + " stopped: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package Tracing;
+
+import DataStructures.Cell;
+import DataStructures.Map;
+import DataStructures.MapSnapshot;
+import Engine.PathFindingEngine;
+import Engine.PathResult;
+import Engine.SearchBudget;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * RecordingEngine: Wraps an engine and records every point-to-point query it answers into a trace, for replaying
+ * them later with TraceReplay
+ *
+ * Note: The recorded map version is the one of the snapshot the query is pinned to. One-to-many queries are
+ *       passed through without being recorded.
+ *       A failure to write the trace stops the recording, never the query.
+ *
+ * The server records at the request level instead (see PathFindingServer), so that queries sharing a search in
+ * flight are all recorded.
+ */
+
+public class RecordingEngine implements PathFindingEngine {
+    private final String mapId;
+    private final PathFindingEngine engine;
+    private final QueryRecorder recorder;
+
+    /**
+     * @param mapId Id under which the map is served, recorded with each query
+     * @param engine
+     * @param writer May be shared by several engines
+     */
+    public RecordingEngine(String mapId, PathFindingEngine engine, TraceWriter writer) {
+        this.mapId = mapId;
+        this.engine = engine;
+        this.recorder = new QueryRecorder(writer);
+    }
+
+    @Override
+    public List<Cell> findPath(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos).path;
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos) {
+        return query(startPos, goalPos, SearchBudget.UNLIMITED);
+    }
+
+    /**
+     * Note: The query is recorded with its status & the limits of the budget, hence replayed under the same limits
+     */
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget) {
+        return query(startPos, goalPos, budget, engine.getMap().getSnapshot());
+    }
+
+    @Override
+    public PathResult query(Cell startPos, Cell goalPos, SearchBudget budget, MapSnapshot grid) {
+        long begin = System.nanoTime();
+        PathResult result = engine.query(startPos, goalPos, budget, grid);
+
+        recorder.record(mapId, engine.getName(), grid.getVersion(), startPos, goalPos, System.nanoTime() - begin,
+                result, budget);
+        return result;
+    }
+
+    @Override
+    public List<List<Cell>> findPathsToNearest(Cell startPos, Collection<Cell> targets, int targetCount) {
+        return engine.findPathsToNearest(startPos, targets, targetCount);
+    }
+
+    @Override
+    public Map getMap() {
+        return engine.getMap();
+    }
+
+    @Override
+    public String getName() {
+        return engine.getName();
+    }
+}
@@ -0,0 +1,149 @@
+package Tracing;
+
+import Engine.PathResult;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TraceReader: Reads query traces written by {@link TraceWriter}
+ */
+
+public class TraceReader implements Closeable {
+    private static final PathResult.Status[] STATUSES = PathResult.Status.values();
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final short formatVersion;
+
+    public TraceReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+
+        if (this.in.readInt() != TraceWriter.MAGIC) {
+            throw new IOException("Not a query trace");
+        }
+        formatVersion = this.in.readShort();
+        if (formatVersion < 1 || formatVersion > TraceWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported trace format version: " + formatVersion);
+        }
+    }
+
+    public TraceReader(String filePath) throws IOException {
+        this(new FileInputStream(filePath));
+    }
+
+    /**
+     * Read all records of the given trace file
+     * @param filePath
+     * @return
+     * @throws IOException
+     */
+    public static List<TraceRecord> readAll(String filePath) throws IOException {
+        List<TraceRecord> records = new ArrayList<>();
+
+        try (TraceReader reader = new TraceReader(filePath)) {
+            TraceRecord record;
+            while ((record = reader.read()) != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * @return The next record, or null at the end of the trace. A record cut short (e.g. by a crash of the
+     *         recording process) also ends the trace
+     * @throws IOException
+     */
+    public TraceRecord read() throws IOException {
+        try {
+            while (true) {
+                int tag = in.read();
+                if (tag == -1) {
+                    return null;
+                }
+
+                if (tag == TraceWriter.TAG_STRING) {
+                    int id = (int) readVarLong(in);
+                    if (id != strings.size()) {
+                        throw new IOException("Corrupted trace: string " + id + " defined out of order");
+                    }
+                    strings.add(in.readUTF());
+                }
+                else if (tag == TraceWriter.TAG_QUERY) {
+                    String mapId = getString(readVarLong(in));
+                    String engineName = getString(readVarLong(in));
+                    long mapVersion = readVarLong(in);
+                    int startX = unZigZag(readVarLong(in));
+                    int startY = unZigZag(readVarLong(in));
+                    int goalX = unZigZag(readVarLong(in));
+                    int goalY = unZigZag(readVarLong(in));
+                    long latencyNanos = readVarLong(in);
+                    long expansions = readVarLong(in) - 1;
+                    long pathCost = readVarLong(in) - 1;
+
+                    if (formatVersion == 1) {
+                        // Recorded as unlimited queries, hence without path cost means no path
+                        PathResult.Status status = pathCost == TraceRecord.NO_PATH
+                                ? PathResult.Status.NO_PATH : PathResult.Status.COMPLETE;
+                        return new TraceRecord(mapId, engineName, mapVersion, startX, startY, goalX, goalY,
+                                latencyNanos, expansions, pathCost, status,
+                                TraceRecord.NO_LIMIT, TraceRecord.NO_LIMIT, TraceRecord.NO_LIMIT);
+                    }
+
+                    int status = in.readUnsignedByte();
+                    if (status >= STATUSES.length) {
+                        throw new IOException("Corrupted trace: unknown status " + status);
+                    }
+                    long maxExpansions = readVarLong(in);
+                    long maxOpenNodes = readVarLong(in);
+                    long maxTimeMillis = readVarLong(in);
+
+                    return new TraceRecord(mapId, engineName, mapVersion, startX, startY, goalX, goalY,
+                            latencyNanos, expansions, pathCost, STATUSES[status],
+                            maxExpansions, maxOpenNodes, maxTimeMillis);
+                }
+                else {
+                    throw new IOException("Corrupted trace: unknown record tag " + tag);
+                }
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String getString(long id) throws IOException {
+        if (id < 0 || id >= strings.size()) {
+            throw new IOException("Corrupted trace: undefined string " + id);
+        }
+        return strings.get((int) id);
+    }
+
+    private static int unZigZag(long value) {
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupted trace: varint too long");
+    }
+}
@@ -0,0 +1,92 @@
+package Tracing;
+
+import Engine.PathResult;
+import Engine.SearchBudget;
+
+/**
+ * TraceRecord: One recorded query
+ *
+ * The limits of the search budget the query ran under are recorded along with its status, so that a replay runs
+ * under the same limits and a query that ran out of budget is not mistaken for one that found no path.
+ */
+
+public class TraceRecord {
+    /** Value of pathCost if no path was found, or if the search ran out of budget */
+    public static final long NO_PATH = -1;
+    /** Value of the limits of the budget if unlimited */
+    public static final long NO_LIMIT = 0;
+
+    public final String mapId;
+    /** {@link Engine.PathFindingEngine#getName()} of the engine which answered the query */
+    public final String engineName;
+    /** Version of the map snapshot when the query started */
+    public final long mapVersion;
+    public final int startX, startY, goalX, goalY;
+    public final long latencyNanos;
+    /** Or {@link Engine.PathResult#UNKNOWN_EXPANSIONS} */
+    public final long expansions;
+    /** Octile cost of the path, in units of {@link HeuristicStrategy.FixedPointOctileDistance}, or NO_PATH */
+    public final long pathCost;
+    public final PathResult.Status status;
+    /** Limits of the search budget, or NO_LIMIT */
+    public final long maxExpansions, maxOpenNodes, maxTimeMillis;
+
+    public TraceRecord(String mapId, String engineName, long mapVersion, int startX, int startY, int goalX, int goalY,
+                       long latencyNanos, long expansions, long pathCost, PathResult.Status status,
+                       long maxExpansions, long maxOpenNodes, long maxTimeMillis) {
+        this.mapId = mapId;
+        this.engineName = engineName;
+        this.mapVersion = mapVersion;
+        this.startX = startX;
+        this.startY = startY;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        this.latencyNanos = latencyNanos;
+        this.expansions = expansions;
+        this.pathCost = pathCost;
+        this.status = status;
+        this.maxExpansions = maxExpansions;
+        this.maxOpenNodes = maxOpenNodes;
+        this.maxTimeMillis = maxTimeMillis;
+    }
+
+    /**
+     * @param limit Limit of a budget, Long.MAX_VALUE if unlimited
+     * @return The limit as recorded
+     */
+    static long toLimit(long limit) {
+        return limit == Long.MAX_VALUE ? NO_LIMIT : limit;
+    }
+
+    /**
+     * Create a record of a query answered under the given budget
+     */
+    public static TraceRecord of(String mapId, String engineName, long mapVersion, int startX, int startY,
+                                 int goalX, int goalY, long latencyNanos, PathResult result, long pathCost,
+                                 SearchBudget budget) {
+        return new TraceRecord(mapId, engineName, mapVersion, startX, startY, goalX, goalY, latencyNanos,
+                result.expansions, pathCost, result.status, toLimit(budget.getMaxExpansions()),
+                toLimit(budget.getMaxOpenNodes()), toLimit(budget.getMaxTimeMillis()));
+    }
+
+    /**
+     * @return A budget of the recorded limits, for replaying the query (a new one per call, with its own counters)
+     */
+    public SearchBudget toBudget() {
+        if (maxExpansions == NO_LIMIT && maxOpenNodes == NO_LIMIT && maxTimeMillis == NO_LIMIT) {
+            return SearchBudget.UNLIMITED;
+        }
+
+        SearchBudget budget = new SearchBudget();
+        if (maxExpansions != NO_LIMIT) {
+            budget.initMaxExpansions(maxExpansions);
+        }
+        if (maxOpenNodes != NO_LIMIT) {
+            budget.initMaxOpenNodes(maxOpenNodes);
+        }
+        if (maxTimeMillis != NO_LIMIT) {
+            budget.initMaxTimeMillis(maxTimeMillis);
+        }
+        return budget;
+    }
+}
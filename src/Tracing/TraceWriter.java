@@ -0,0 +1,112 @@
+package Tracing;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+
+/**
+ * TraceWriter: Writes query traces in a compact binary format
+ *
+ * Format:
+ *   Header:  int MAGIC, short FORMAT_VERSION
+ *   Records: byte tag, followed by
+ *     TAG_STRING: varint id, UTF string             (defines a map id or engine name, before its first use)
+ *     TAG_QUERY:  varint map id, varint engine name, varlong map version,
+ *                 zigzag varint startX, startY, goalX, goalY,
+ *                 varlong latency (ns), varlong expansions + 1, varlong path cost + 1,
+ *                 byte status ({@link Engine.PathResult.Status} ordinal),
+ *                 varlong max expansions, max open nodes, max time (ms)   (0 if unlimited)
+ *
+ * Strings are written once per trace, hence a query usually takes 18 to 30 bytes. Version 1 traces, without the
+ * status & the limits, are still read (as unlimited queries).
+ *
+ * Note: Writes are serialized, so a single writer can record the queries of all threads
+ */
+
+public class TraceWriter implements Closeable {
+    static final int MAGIC = 0x4A505354;             // "JPST"
+    static final short FORMAT_VERSION = 2;
+    static final byte TAG_STRING = 1;
+    static final byte TAG_QUERY = 2;
+
+    private final DataOutputStream out;
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private long recordCount = 0;
+
+    public TraceWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(FORMAT_VERSION);
+    }
+
+    public TraceWriter(String filePath) throws IOException {
+        this(new FileOutputStream(filePath));
+    }
+
+    public synchronized void write(TraceRecord record) throws IOException {
+        int mapId = getStringId(record.mapId);
+        int engineName = getStringId(record.engineName);
+
+        out.writeByte(TAG_QUERY);
+        writeVarLong(out, mapId);
+        writeVarLong(out, engineName);
+        writeVarLong(out, record.mapVersion);
+        writeVarLong(out, zigZag(record.startX));
+        writeVarLong(out, zigZag(record.startY));
+        writeVarLong(out, zigZag(record.goalX));
+        writeVarLong(out, zigZag(record.goalY));
+        writeVarLong(out, record.latencyNanos);
+        writeVarLong(out, record.expansions + 1);
+        writeVarLong(out, record.pathCost + 1);
+        out.writeByte(record.status.ordinal());
+        writeVarLong(out, record.maxExpansions);
+        writeVarLong(out, record.maxOpenNodes);
+        writeVarLong(out, record.maxTimeMillis);
+        recordCount++;
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private int getStringId(String string) throws IOException {
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = stringIds.size();
+            stringIds.put(string, id);
+
+            out.writeByte(TAG_STRING);
+            writeVarLong(out, id);
+            out.writeUTF(string);
+        }
+        return id;
+    }
+
+    private static long zigZag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Write a non-negative value 7 bits at a time, low bits first
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}